@@ -0,0 +1,49 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lab2 AES.encrypt/decrypt, mode uses the same numbers as the lab: 1 ECB, 2 CBC, 3 CFB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AESBenchmark {
+    private static final String KEY = "0123456789abcdef";
+
+    @Param({"1", "2", "3"})
+    public String mode;
+
+    @Param({"16", "1024", "65536", "1048576"})
+    public int size;
+
+    private MethodHandle encrypt;
+    private MethodHandle decrypt;
+    private String plaintext;
+    private String ciphertext;
+
+    @Setup
+    public void setup() throws Throwable {
+        ClassLoader loader = LabClasses.load("lab2");
+        encrypt = LabClasses.staticMethod(loader, "AES", "encrypt", String.class, String.class, String.class);
+        decrypt = LabClasses.staticMethod(loader, "AES", "decrypt", String.class, String.class, String.class);
+        plaintext = LabClasses.text("The quick brown fox jumps over the lazy dog. ", size);
+        ciphertext = (String) encrypt.invoke(plaintext, KEY, mode);
+    }
+
+    @Benchmark
+    public Object encrypt() throws Throwable {
+        return encrypt.invoke(plaintext, KEY, mode);
+    }
+
+    @Benchmark
+    public Object decrypt() throws Throwable {
+        return decrypt.invoke(ciphertext, KEY, mode);
+    }
+}
@@ -0,0 +1,23 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler, so every result also has the allocation rate (gc.alloc.rate.norm).
+ *  - Run it from the benchmarks directory, or pass -Dbench.root=path/to/repository.
+ *  - The optional first argument is a regex of the benchmarks to run, e.g. "AESBenchmark".
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "bench\\..*")
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Dbench.root=" + System.getProperty("bench.root", ".."))
+                .build();
+        new Runner(options).run();
+    }
+}
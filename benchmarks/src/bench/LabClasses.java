@@ -0,0 +1,88 @@
+package bench;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles the sources of one lab into a temporary directory and loads them with their own class loader.
+ *  - The labs keep their classes in the default package, which can not be imported from here,
+ *    so the benchmarks reach them through method handles.
+ *  - Every lab has its own Main, so each one gets a separate loader.
+ *  - The repository root is taken from -Dbench.root and defaults to the parent of the working directory.
+ */
+final class LabClasses {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private LabClasses() {
+    }
+
+    /**
+     * Compiles lab/src (e.g. "lab2" or "lab5/PasswordManager") and returns a loader for the result.
+     */
+    static ClassLoader load(String lab) throws IOException {
+        Path root = Paths.get(System.getProperty("bench.root", "..")).toAbsolutePath().normalize();
+        Path src = root.resolve(lab).resolve("src");
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(src)) {
+            sources = files.filter(p -> p.toString().endsWith(".java")).collect(Collectors.toList());
+        }
+        if (sources.isEmpty()) {
+            throw new IOException("No sources found in " + src + ", set -Dbench.root to the repository root");
+        }
+
+        Path out = Files.createTempDirectory("bench-" + lab.replaceAll("\\W", "_"));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            List<String> options = List.of("-d", out.toString(), "-nowarn", "--add-modules", "jdk.incubator.vector");
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromPaths(sources);
+            if (!compiler.getTask(null, fileManager, diagnostics, options, null, units).call()) {
+                throw new IOException("Compiling " + src + " failed: " + diagnostics.getDiagnostics());
+            }
+        }
+        return new URLClassLoader(new URL[]{out.toUri().toURL()}, LabClasses.class.getClassLoader());
+    }
+
+    /**
+     * Method handle for a public or private static method.
+     */
+    static MethodHandle staticMethod(ClassLoader loader, String className, String name, Class<?>... params) throws ReflectiveOperationException {
+        Method method = loader.loadClass(className).getDeclaredMethod(name, params);
+        method.setAccessible(true);
+        return LOOKUP.unreflect(method);
+    }
+
+    /**
+     * Method handle for a public instance method.
+     */
+    static MethodHandle virtualMethod(ClassLoader loader, String className, String name, Class<?> returnType, Class<?>... params) throws ReflectiveOperationException {
+        return LOOKUP.findVirtual(loader.loadClass(className), name, MethodType.methodType(returnType, params));
+    }
+
+    /**
+     * Printable ASCII text of the given length, taken from the characters in pool.
+     */
+    static String text(String pool, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(pool.charAt((i * 31 + i / pool.length()) % pool.length()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lab5 PasswordManager: UserAuthUtil.pbkdf2Hash (PBKDF2 with 65536 iterations), reported as time per derivation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordHashBenchmark {
+    @Param({"8", "32"})
+    public int passwordLength;
+
+    private MethodHandle pbkdf2Hash;
+    private char[] password;
+    private byte[] salt;
+
+    @Setup
+    public void setup() throws Exception {
+        ClassLoader loader = LabClasses.load("lab5/PasswordManager");
+        pbkdf2Hash = LabClasses.staticMethod(loader, "util.UserAuthUtil", "pbkdf2Hash", char[].class, byte[].class);
+        password = LabClasses.text("abcdefghijklmnopqrstuvwxyz0123456789@#$%!&*", passwordLength).toCharArray();
+        salt = new byte[16];
+    }
+
+    @Benchmark
+    public Object pbkdf2Hash() throws Throwable {
+        return pbkdf2Hash.invoke(password, salt);
+    }
+}
@@ -0,0 +1,44 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lab5 PasswordManager: EncryptionUtil.encrypt/decrypt over payload sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordManagerBenchmark {
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    private MethodHandle encrypt;
+    private MethodHandle decrypt;
+    private String plaintext;
+    private String ciphertext;
+
+    @Setup
+    public void setup() throws Throwable {
+        ClassLoader loader = LabClasses.load("lab5/PasswordManager");
+        encrypt = LabClasses.staticMethod(loader, "util.EncryptionUtil", "encrypt", String.class);
+        decrypt = LabClasses.staticMethod(loader, "util.EncryptionUtil", "decrypt", String.class);
+        plaintext = LabClasses.text("abcdefghijklmnopqrstuvwxyz0123456789@#$%!&*", size);
+        ciphertext = (String) encrypt.invoke(plaintext);
+    }
+
+    @Benchmark
+    public Object encrypt() throws Throwable {
+        return encrypt.invoke(plaintext);
+    }
+
+    @Benchmark
+    public Object decrypt() throws Throwable {
+        return decrypt.invoke(ciphertext);
+    }
+}
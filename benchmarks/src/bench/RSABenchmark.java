@@ -0,0 +1,97 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lab3 RSA through the lab's own classes, on the common pool like RSA.main:
+ *  - chars: menu option 2, one RSAPipeline block per character with the key from the primes 101 and 103.
+ *  - blocks: menu option 3, the message packed into padded RSABlocks of a generated 2048-bit key.
+ *  - factorSemiprime: RSAFactorizer.factorSemiprime on the small modulus, as option 1 does to recover the key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RSABenchmark {
+    @Param({"16", "256", "4096"})
+    public int size;
+
+    private Object charKey;
+    private Object blockKey;
+    private Object pipeline;
+    private MethodHandle pipelineEncrypt;
+    private MethodHandle pipelineDecrypt;
+    private MethodHandle blocksEncrypt;
+    private MethodHandle blocksDecrypt;
+    private Object factorizer;
+    private MethodHandle factorSemiprime;
+    private BigInteger n;
+    private List<BigInteger> chars;
+    private List<BigInteger> encryptedChars;
+    private byte[] bytes;
+    private List<BigInteger> encryptedBlocks;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Throwable {
+        ClassLoader loader = LabClasses.load("lab3");
+        Class<?> keyType = loader.loadClass("RSAKeyPair");
+        Class<?> pipelineType = loader.loadClass("RSAPipeline");
+        MethodHandle fromPrimes = LabClasses.staticMethod(loader, "RSAKeyPair", "fromPrimes", BigInteger.class, BigInteger.class);
+        MethodHandle generate = LabClasses.staticMethod(loader, "RSAKeyPair", "generate", int.class);
+        pipelineEncrypt = LabClasses.virtualMethod(loader, "RSAPipeline", "encrypt", List.class, keyType, List.class);
+        pipelineDecrypt = LabClasses.virtualMethod(loader, "RSAPipeline", "decrypt", List.class, keyType, List.class);
+        blocksEncrypt = LabClasses.staticMethod(loader, "RSABlocks", "encrypt", keyType, byte[].class, pipelineType);
+        blocksDecrypt = LabClasses.staticMethod(loader, "RSABlocks", "decrypt", keyType, List.class, pipelineType);
+        factorSemiprime = LabClasses.virtualMethod(loader, "RSAFactorizer", "factorSemiprime", BigInteger[].class, BigInteger.class);
+        factorizer = loader.loadClass("RSAFactorizer").getConstructor().newInstance();
+
+        charKey = fromPrimes.invoke(BigInteger.valueOf(101), BigInteger.valueOf(103));
+        blockKey = generate.invoke(2048);
+        pipeline = pipelineType.getConstructor().newInstance();
+        n = BigInteger.valueOf(101 * 103);
+
+        String message = LabClasses.text("The quick brown fox jumps over the lazy dog. ", size);
+        chars = new ArrayList<>();
+        for (char c : message.toCharArray()) {
+            chars.add(BigInteger.valueOf((int) c));
+        }
+        bytes = message.getBytes(StandardCharsets.UTF_8);
+        encryptedChars = (List<BigInteger>) pipelineEncrypt.invoke(pipeline, charKey, chars);
+        encryptedBlocks = (List<BigInteger>) blocksEncrypt.invoke(blockKey, bytes, pipeline);
+    }
+
+    @Benchmark
+    public Object encryptChars() throws Throwable {
+        return pipelineEncrypt.invoke(pipeline, charKey, chars);
+    }
+
+    @Benchmark
+    public Object decryptChars() throws Throwable {
+        return pipelineDecrypt.invoke(pipeline, charKey, encryptedChars);
+    }
+
+    @Benchmark
+    public Object encryptBlocks() throws Throwable {
+        return blocksEncrypt.invoke(blockKey, bytes, pipeline);
+    }
+
+    @Benchmark
+    public Object decryptBlocks() throws Throwable {
+        return blocksDecrypt.invoke(blockKey, encryptedBlocks, pipeline);
+    }
+
+    @Benchmark
+    public Object factorSemiprime() throws Throwable {
+        return factorSemiprime.invoke(factorizer, n);
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lab4 SHA256withRSA signing with first's SigningService and verification as in third, with a 2048-bit key.
+ * Verification lives inside third's main, so it is repeated here the same way, on a frame that SigningService made.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    private Object service;
+    private MethodHandle sign;
+    private String message;
+    private String[] frame;
+
+    @Setup
+    public void setup() throws Throwable {
+        ClassLoader loader = LabClasses.load("lab4/first");
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+        keyGen.initialize(2048);
+        service = loader.loadClass("SigningService").getConstructor(KeyPair.class).newInstance(keyGen.generateKeyPair());
+        sign = LabClasses.virtualMethod(loader, "SigningService", "sign", String.class, String.class);
+        MethodHandle makeFrame = LabClasses.virtualMethod(loader, "SigningService", "frame", String[].class, String.class);
+        message = LabClasses.text("The quick brown fox jumps over the lazy dog. ", size);
+        frame = (String[]) makeFrame.invoke(service, message);
+    }
+
+    @Benchmark
+    public Object sign() throws Throwable {
+        return sign.invoke(service, message);
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        byte[] keyBytes = Base64.getDecoder().decode(frame[2]);
+        PublicKey publicKey = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(keyBytes));
+        Signature sig = Signature.getInstance("SHA256withRSA");
+        sig.initVerify(publicKey);
+        sig.update(frame[0].getBytes());
+        return sig.verify(Base64.getDecoder().decode(frame[1]));
+    }
+}
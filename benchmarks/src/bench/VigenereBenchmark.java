@@ -0,0 +1,57 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lab 1 VigenereCipher.Encrypt/Decrypt in ASCII mode (1) and custom alphabet mode (2).
+ * The forks get the vector module, without it VigenereCipher falls back to the scalar loop and the kernel is never measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VigenereBenchmark {
+    // the alphabet lab 1 Main uses for the custom mode
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ abcdefghijklmnopqrstuvwxyz,./!;'[]*()";
+
+    @Param({"1", "2"})
+    public String mode;
+
+    @Param({"64", "4096", "1048576"})
+    public int size;
+
+    private Object cipher;
+    private MethodHandle encrypt;
+    private MethodHandle decrypt;
+    private String text;
+
+    @Setup
+    public void setup() throws Exception {
+        ClassLoader loader = LabClasses.load("lab 1");
+        Class<?> type = loader.loadClass("VigenereCipher");
+        if (mode.equals("1")) {
+            cipher = type.getConstructor(String.class).newInstance("Secret Key");
+        } else {
+            cipher = type.getConstructor(String.class, String.class).newInstance("Secret Key", ALPHABET);
+        }
+        encrypt = LabClasses.virtualMethod(loader, "VigenereCipher", "Encrypt", String.class, String.class);
+        decrypt = LabClasses.virtualMethod(loader, "VigenereCipher", "Decrypt", String.class, String.class);
+        // ASCII mode can produce char 127, which Decrypt rejects, so both directions run over the same text
+        text = LabClasses.text(ALPHABET, size);
+    }
+
+    @Benchmark
+    public Object encrypt() throws Throwable {
+        return encrypt.invoke(cipher, text);
+    }
+
+    @Benchmark
+    public Object decrypt() throws Throwable {
+        return decrypt.invoke(cipher, text);
+    }
+}
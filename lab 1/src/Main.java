@@ -1,3 +1,5 @@
+import javax.swing.SwingUtilities;
+
 public class Main {
     public static void main(String[] args) {
         String alphabet = new String("ABCDEFGHIJKLMNOPQRSTUVWXYZ abcdefghijklmnopqrstuvwxyz,./!;'[]*()");
@@ -12,9 +14,9 @@ public class Main {
         } else {
             throw new RuntimeException();
         }
-        MainFrame mainFrame = new MainFrame(vigenereCipher);
-        MainController mainController = new MainController(mainFrame);
-        Thread thread = new Thread(mainController);
-        thread.start();
+        SwingUtilities.invokeLater(() -> {
+            MainFrame mainFrame = new MainFrame();
+            new MainController(mainFrame, vigenereCipher);
+        });
     }
-}
\ No newline at end of file
+}
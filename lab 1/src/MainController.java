@@ -1,26 +1,134 @@
-public class MainController implements Runnable {
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MainController {
     private MainFrame mainFrame;
+    private VigenereCipher vigenereCipher;
+    private ExecutorService executor;
+    //every full update gets a higher number, results and patches of older ones are thrown away
+    private AtomicLong generation;
+    //false while the output shows an error message instead of the transformed text, only used on the worker
+    private boolean patchable;
 
-    public MainController(MainFrame mainFrame) {
+    public MainController(MainFrame mainFrame, VigenereCipher vigenereCipher) {
         this.mainFrame = mainFrame;
+        this.vigenereCipher = vigenereCipher;
+        this.generation = new AtomicLong();
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "vigenere-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mainFrame.setController(this);
     }
 
-    @Override
-    public void run() {
-        while (true) {
-            if (mainFrame.getLastPressed() == 1) {
-                mainFrame.Encrypt();
+    //called on the EDT when a button is pressed, action is 1 for encrypt and 2 for decrypt
+    public void submit(int action, String text) {
+        long current = generation.incrementAndGet();
+        executor.execute(() -> {
+            if (current != generation.get()) {
+                return;
+            }
+            String result;
+            try {
+                result = transform(action, text, 0);
+                patchable = true;
+            } catch (RuntimeException e) {
+                result = "Error: the text contains characters that are not in the alphabet";
+                patchable = false;
             }
+            String output = result;
+            SwingUtilities.invokeLater(() -> {
+                if (current == generation.get()) {
+                    mainFrame.showResult(output);
+                }
+            });
+        });
+    }
 
-            if (mainFrame.getLastPressed() == 2) {
-                mainFrame.Decrypt();
+    //called on the EDT after length chars were inserted at offset
+    //Vigenere is position-local, so only the inserted chars and, if the key alignment moved, the rest of the text is redone
+    public void textInserted(int action, Document document, int offset, int length) {
+        try {
+            if (length % vigenereCipher.getKeyLength() == 0) {
+                String inserted = document.getText(offset, length);
+                patch(() -> {
+                    String result = transform(action, inserted, offset);
+                    return () -> mainFrame.insertResult(result, offset);
+                });
+            } else {
+                String tail = document.getText(offset, document.getLength() - offset);
+                patch(() -> {
+                    String result = transform(action, tail, offset);
+                    return () -> mainFrame.replaceResultTail(result, offset);
+                });
             }
+        } catch (BadLocationException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+    //called on the EDT after length chars were removed at offset
+    public void textRemoved(int action, Document document, int offset, int length) {
+        try {
+            if (length % vigenereCipher.getKeyLength() == 0) {
+                patch(() -> () -> mainFrame.removeResult(offset, length));
+            } else {
+                String tail = document.getText(offset, document.getLength() - offset);
+                patch(() -> {
+                    String result = transform(action, tail, offset);
+                    return () -> mainFrame.replaceResultTail(result, offset);
+                });
             }
+        } catch (BadLocationException e) {
+            throw new RuntimeException(e);
         }
     }
+
+    //patches run in order on the worker and are applied in the same order on the EDT
+    private void patch(PatchTask task) {
+        long current = generation.get();
+        executor.execute(() -> {
+            if (current != generation.get()) {
+                return;
+            }
+            if (!patchable) {
+                SwingUtilities.invokeLater(mainFrame::refresh);
+                return;
+            }
+            Runnable apply;
+            try {
+                apply = task.compute();
+            } catch (RuntimeException e) {
+                //the output can not be patched anymore, redo everything from the current text
+                generation.incrementAndGet();
+                SwingUtilities.invokeLater(mainFrame::refresh);
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (current == generation.get()) {
+                    apply.run();
+                }
+            });
+        });
+    }
+
+    private String transform(int action, String text, int offset) {
+        char[] characters = text.toCharArray();
+        int keyPos = offset % vigenereCipher.getKeyLength();
+        if (action == 1)
+            vigenereCipher.encrypt(characters, 0, characters, 0, characters.length, keyPos);
+        else
+            vigenereCipher.decrypt(characters, 0, characters, 0, characters.length, keyPos);
+        return new String(characters);
+    }
+
+    private interface PatchTask {
+        //runs on the worker, the returned Runnable is run on the EDT
+        Runnable compute();
+    }
 }
@@ -1,5 +1,7 @@
 import javax.swing.*;
 import javax.swing.border.LineBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -9,19 +11,15 @@ public class MainFrame extends JFrame {
     private JTextArea jTextArea2;
     private JButton jButton1;
     private JButton jButton2;
-    private VigenereCipher vigenereCipher;
+    private MainController mainController;
     private int lastPressed;
-    private String lastText;
-    private int lastAction;
 
-    public MainFrame(VigenereCipher vigenereCipher) {
+    public MainFrame() {
         setLayout(new GridLayout(2, 2));
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setBounds(200, 200, 1000, 600);
 
-        this.vigenereCipher = vigenereCipher;
         lastPressed = 0;
-        lastAction = 0;
 
         jTextArea1 = new JTextArea();
         jTextArea2 = new JTextArea();
@@ -42,41 +40,73 @@ public class MainFrame extends JFrame {
         jButton1.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                //String encrypted = vigenereCipher.Encrypt(jTextArea1.getText());
-                //jTextArea2.setText(encrypted);
                 lastPressed = 1;
+                update();
             }
         });
 
         jButton2.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                //String decrypted = vigenereCipher.Decrypt(jTextArea1.getText());
-                //jTextArea2.setText(decrypted);
                 lastPressed = 2;
+                update();
+            }
+        });
+
+        //after a button was pressed the output follows the text as it is edited, only the edited region is redone
+        jTextArea1.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                if (lastPressed != 0 && mainController != null) {
+                    mainController.textInserted(lastPressed, e.getDocument(), e.getOffset(), e.getLength());
+                }
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                if (lastPressed != 0 && mainController != null) {
+                    mainController.textRemoved(lastPressed, e.getDocument(), e.getOffset(), e.getLength());
+                }
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
             }
         });
     }
 
+    public void setController(MainController mainController) {
+        this.mainController = mainController;
+    }
+
     public int getLastPressed() {
         return lastPressed;
     }
 
-    public void Encrypt() {
-        if (!jTextArea1.getText().equals(lastText) || lastAction != 1) {
-            String encrypted = vigenereCipher.Encrypt(jTextArea1.getText());
-            jTextArea2.setText(encrypted);
-            lastText = jTextArea1.getText();
-            lastAction = 1;
-        }
+    //the methods below must be called on the EDT
+    public void showResult(String text) {
+        jTextArea2.setText(text);
+    }
+
+    public void insertResult(String text, int offset) {
+        jTextArea2.insert(text, offset);
+    }
+
+    public void removeResult(int offset, int length) {
+        jTextArea2.replaceRange("", offset, offset + length);
+    }
+
+    public void replaceResultTail(String text, int offset) {
+        jTextArea2.replaceRange(text, offset, jTextArea2.getDocument().getLength());
+    }
+
+    public void refresh() {
+        update();
     }
 
-    public void Decrypt() {
-        if (!jTextArea1.getText().equals(lastText) || lastAction != 2) {
-            String decrypted = vigenereCipher.Decrypt(jTextArea1.getText());
-            jTextArea2.setText(decrypted);
-            lastText = jTextArea1.getText();
-            lastAction = 2;
+    private void update() {
+        if (lastPressed != 0 && mainController != null) {
+            mainController.submit(lastPressed, jTextArea1.getText());
         }
     }
 }
@@ -0,0 +1,277 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+//recovers the key of a VigenereCipher ciphertext, in ASCII mode or with a custom alphabet
+//the key length comes from the index of coincidence of the columns, checked against Kasiski repeats,
+//then every column is solved on its own with a chi-squared test against english letter frequencies
+public class VigenereAnalyzer {
+
+    //a..z in english text
+    private static final double[] ENGLISH = {
+            0.0817, 0.0149, 0.0278, 0.0425, 0.1270, 0.0223, 0.0202, 0.0609, 0.0697, 0.0015, 0.0077, 0.0403, 0.0241,
+            0.0675, 0.0751, 0.0193, 0.0010, 0.0599, 0.0633, 0.0906, 0.0276, 0.0098, 0.0236, 0.0015, 0.0197, 0.0007
+    };
+    //a key length is a candidate if its index of coincidence is at least this part of the best one
+    private static final double IOC_TOLERANCE = 0.9;
+
+    private int mode;
+    private String alphabet;
+    //size of the ciphertext alphabet, 96 in ASCII mode (32..127)
+    private int size;
+    private int[] alphabetIndex;
+    //expected share of every symbol in the plaintext
+    private double[] expected;
+
+    public VigenereAnalyzer() {
+        mode = 1;
+        size = 96;
+        expected = new double[size];
+        for (int i = 0; i < size; i++) {
+            expected[i] = frequency((char) (i + 32));
+        }
+        normalize(expected);
+    }
+
+    public VigenereAnalyzer(String alphabet) {
+        mode = 2;
+        this.alphabet = alphabet;
+        size = alphabet.length();
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, alphabet.charAt(i));
+        }
+        alphabetIndex = new int[max + 1];
+        Arrays.fill(alphabetIndex, -1);
+        for (int i = size - 1; i >= 0; i--) {
+            alphabetIndex[alphabet.charAt(i)] = i;
+        }
+        expected = new double[size];
+        for (int i = 0; i < size; i++) {
+            expected[i] = frequency(alphabet.charAt(i));
+        }
+        normalize(expected);
+    }
+
+    public static class Result {
+        private final String key;
+        private final double indexOfCoincidence;
+        private final int kasiskiVotes;
+
+        Result(String key, double indexOfCoincidence, int kasiskiVotes) {
+            this.key = key;
+            this.indexOfCoincidence = indexOfCoincidence;
+            this.kasiskiVotes = kasiskiVotes;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getKeyLength() {
+            return key.length();
+        }
+
+        //average over the columns for this key length
+        public double getIndexOfCoincidence() {
+            return indexOfCoincidence;
+        }
+
+        //how many repeated trigram distances are a multiple of the key length
+        public int getKasiskiVotes() {
+            return kasiskiVotes;
+        }
+    }
+
+    //tries every key length from 1 to maxKeyLength in parallel and returns the most likely key
+    public Result analyze(String ciphertext, int maxKeyLength) {
+        int[] symbols = toSymbols(ciphertext);
+        int max = Math.max(1, Math.min(maxKeyLength, symbols.length));
+        int[] votes = kasiski(symbols, max);
+
+        List<Candidate> candidates = IntStream.rangeClosed(1, max)
+                .parallel()
+                .mapToObj(length -> new Candidate(length, symbols))
+                .collect(Collectors.toList());
+
+        double best = 0;
+        int bestVotes = 0;
+        for (Candidate candidate : candidates) {
+            best = Math.max(best, candidate.ioc);
+            if (candidate.length > 1) {
+                bestVotes = Math.max(bestVotes, votes[candidate.length]);
+            }
+        }
+
+        //multiples of the real length score as high as the real one, so the shortest good length wins
+        //with enough repeats, lengths that most repeat distances do not agree with are skipped
+        Candidate chosen = null;
+        Candidate shortest = null;
+        for (Candidate candidate : candidates) {
+            if (candidate.ioc < best * IOC_TOLERANCE) {
+                continue;
+            }
+            if (shortest == null) {
+                shortest = candidate;
+            }
+            if (bestVotes >= 5 && candidate.length > 1 && votes[candidate.length] * 2 < bestVotes) {
+                continue;
+            }
+            chosen = candidate;
+            break;
+        }
+        if (chosen == null) {
+            chosen = shortest;
+        }
+        return new Result(chosen.solve(), chosen.ioc, votes[chosen.length]);
+    }
+
+    public String recoverKey(String ciphertext, int maxKeyLength) {
+        return analyze(ciphertext, maxKeyLength).getKey();
+    }
+
+    //one key length: one pass over the ciphertext fills a histogram per column
+    private class Candidate {
+        private final int length;
+        private final int[] histogram;
+        private final int[] counts;
+        private final double ioc;
+
+        Candidate(int length, int[] symbols) {
+            this.length = length;
+            histogram = new int[length * size];
+            counts = new int[length];
+            int column = 0;
+            for (int symbol : symbols) {
+                histogram[column * size + symbol]++;
+                counts[column]++;
+                column++;
+                if (column == length) {
+                    column = 0;
+                }
+            }
+
+            double sum = 0;
+            for (int c = 0; c < length; c++) {
+                long n = counts[c];
+                if (n < 2) {
+                    continue;
+                }
+                long pairs = 0;
+                for (int s = 0; s < size; s++) {
+                    long f = histogram[c * size + s];
+                    pairs += f * (f - 1);
+                }
+                sum += (double) pairs / (n * (n - 1));
+            }
+            ioc = sum / length;
+        }
+
+        String solve() {
+            char[] key = new char[length];
+            for (int c = 0; c < length; c++) {
+                key[c] = keyChar(bestShift(c));
+            }
+            return new String(key);
+        }
+
+        //the shift whose decryption of the column is closest to the expected plaintext frequencies
+        private int bestShift(int column) {
+            int offset = column * size;
+            int n = counts[column];
+            int bestShift = 0;
+            double bestScore = Double.MAX_VALUE;
+            for (int shift = 0; shift < size; shift++) {
+                double score = 0;
+                for (int p = 0; p < size; p++) {
+                    int c = p + shift;
+                    if (c >= size) {
+                        c -= size;
+                    }
+                    double e = n * expected[p];
+                    double d = histogram[offset + c] - e;
+                    score += d * d / e;
+                }
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestShift = shift;
+                }
+            }
+            return bestShift;
+        }
+    }
+
+    //votes[l] counts the distances between repeated trigrams that l divides
+    private int[] kasiski(int[] symbols, int maxKeyLength) {
+        int[] votes = new int[maxKeyLength + 1];
+        long trigrams = (long) size * size * size;
+        if (symbols.length < 3 || trigrams > (1 << 24)) {
+            return votes;
+        }
+        int[] lastSeen = new int[(int) trigrams];
+        Arrays.fill(lastSeen, -1);
+        for (int i = 0; i + 2 < symbols.length; i++) {
+            int trigram = (symbols[i] * size + symbols[i + 1]) * size + symbols[i + 2];
+            int previous = lastSeen[trigram];
+            if (previous >= 0) {
+                int distance = i - previous;
+                for (int l = 2; l <= maxKeyLength; l++) {
+                    if (distance % l == 0) {
+                        votes[l]++;
+                    }
+                }
+            }
+            lastSeen[trigram] = i;
+        }
+        return votes;
+    }
+
+    //ciphertext chars -> positions in the ciphertext alphabet, in a single pass
+    private int[] toSymbols(String ciphertext) {
+        int[] symbols = new int[ciphertext.length()];
+        for (int i = 0; i < symbols.length; i++) {
+            char c = ciphertext.charAt(i);
+            int symbol;
+            if (mode == 1)
+                symbol = c >= 32 && c < 32 + size ? c - 32 : -1;
+            else
+                symbol = c < alphabetIndex.length ? alphabetIndex[c] : -1;
+            if (symbol < 0) {
+                throw new IllegalArgumentException("Character at index " + i + " is not part of the ciphertext alphabet");
+            }
+            symbols[i] = symbol;
+        }
+        return symbols;
+    }
+
+    //the key char that moves plaintext symbols by shift positions
+    private char keyChar(int shift) {
+        if (mode == 1)
+            return (char) (shift + 32); //(a + b - 64) % 96 + 32 moves a - 32 by b - 32
+        else
+            return alphabet.charAt(shift);
+    }
+
+    private static double frequency(char c) {
+        if (c == ' ')
+            return 0.18;
+        if (c >= 'a' && c <= 'z')
+            return 0.76 * ENGLISH[c - 'a'];
+        if (c >= 'A' && c <= 'Z')
+            return 0.04 * ENGLISH[c - 'A'];
+        if (c == '.' || c == ',')
+            return 0.01;
+        return 0.0005;
+    }
+
+    private static void normalize(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] /= sum;
+        }
+    }
+}
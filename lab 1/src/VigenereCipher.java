@@ -1,33 +1,79 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public class VigenereCipher {
 
+    private static final int BUFFER_SIZE = 8192;
+    //below this many chars a chunk is not split any further
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
     private String key;
     private int mode;
     private String alphabet;
 
+    // precomputed once per key, so the hot loops do not touch the Strings at all
+    private char[] alphabetChars;
+    private int[] alphabetIndex;
+    private int[] encryptShift;
+    private int[] decryptShift;
+    //SIMD loops for ASCII mode, null if the Vector API is not available or the key does not fit
+    private VigenereKernel encryptKernel;
+    private VigenereKernel decryptKernel;
+
     public VigenereCipher(String key) {
         this.key = key;
         mode = 1;
+        encryptShift = new int[key.length()];
+        decryptShift = new int[key.length()];
+        for (int i = 0; i < key.length(); i++) {
+            encryptShift[i] = key.charAt(i) - 64;
+            decryptShift[i] = 96 - key.charAt(i);
+        }
+        encryptKernel = vectorKernel(encryptShift);
+        decryptKernel = vectorKernel(decryptShift);
     }
 
     public VigenereCipher(String key, String alphabet) {
         this.key = key;
         mode = 2;
         this.alphabet = alphabet;
+
+        alphabetChars = alphabet.toCharArray();
+        int max = 0;
+        for (char c : alphabetChars) {
+            max = Math.max(max, c);
+        }
+        //lookup table char -> position in the alphabet, -1 if it is not part of it (same as indexOf)
+        alphabetIndex = new int[max + 1];
+        Arrays.fill(alphabetIndex, -1);
+        for (int i = alphabetChars.length - 1; i >= 0; i--) {
+            alphabetIndex[alphabetChars[i]] = i;
+        }
+
+        encryptShift = new int[key.length()];
+        decryptShift = new int[key.length()];
+        for (int i = 0; i < key.length(); i++) {
+            encryptShift[i] = indexOf(key.charAt(i));
+            decryptShift[i] = alphabetChars.length - indexOf(key.charAt(i));
+        }
     }
 
     public String Encrypt(String text) {
-        char[] characters = new char[text.length()];
-        int ind = 0;
-        for (int i = 0; i < text.length(); i++) {
-            if (mode == 1)
-                characters[i] = EncryptChar(text.charAt(i), key.charAt(ind));
-            else
-                characters[i] = EncryptChar2(text.charAt(i), key.charAt(ind));
-            ind++;
-            if (ind >= key.length()) {
-                ind = 0;
-            }
-        }
+        char[] characters = text.toCharArray();
+        encrypt(characters, 0, characters, 0, characters.length, 0);
         return new String(characters);
     }
 
@@ -41,22 +87,12 @@ public class VigenereCipher {
     }
 
     public char EncryptChar2(char a, char b) {
-        return alphabet.charAt((alphabet.indexOf(a) + alphabet.indexOf(b)) % alphabet.length());
+        return alphabetChars[(indexOf(a) + indexOf(b)) % alphabetChars.length];
     }
 
     public String Decrypt(String text) {
-        char[] characters = new char[text.length()];
-        int ind = 0;
-        for (int i = 0; i < text.length(); i++) {
-            if (mode == 1)
-                characters[i] = DecryptChar(text.charAt(i), key.charAt(ind));
-            else
-                characters[i] = DecryptChar2(text.charAt(i), key.charAt(ind));
-            ind++;
-            if (ind >= key.length()) {
-                ind = 0;
-            }
-        }
+        char[] characters = text.toCharArray();
+        decrypt(characters, 0, characters, 0, characters.length, 0);
         return new String(characters);
     }
 
@@ -68,6 +104,249 @@ public class VigenereCipher {
     }
 
     public char DecryptChar2(char a, char b) {
-        return alphabet.charAt((alphabet.indexOf(a) - alphabet.indexOf(b) + alphabet.length()) % alphabet.length());
+        return alphabetChars[(indexOf(a) - indexOf(b) + alphabetChars.length) % alphabetChars.length];
+    }
+
+    //streams the text from in to out with one reusable buffer, the key position carries over between chunks
+    public void Encrypt(Reader in, Writer out) throws IOException {
+        transform(in, out, true);
+    }
+
+    public void Decrypt(Reader in, Writer out) throws IOException {
+        transform(in, out, false);
+    }
+
+    //same as the Reader/Writer version, but reads and writes bytes in the given charset
+    public void Encrypt(ReadableByteChannel in, WritableByteChannel out, Charset charset) throws IOException {
+        transform(in, out, charset, true);
+    }
+
+    public void Decrypt(ReadableByteChannel in, WritableByteChannel out, Charset charset) throws IOException {
+        transform(in, out, charset, false);
+    }
+
+    //splits the text into chunks and encrypts them on the common fork-join pool
+    //the key offset of every chunk is start % key length, so the result is the same as Encrypt(String)
+    public char[] EncryptParallel(char[] text) {
+        checkKey(text.length);
+        char[] characters = new char[text.length];
+        ForkJoinPool.commonPool().invoke(new ChunkTask(text, characters, 0, text.length, true));
+        return characters;
+    }
+
+    public char[] DecryptParallel(char[] text) {
+        checkKey(text.length);
+        char[] characters = new char[text.length];
+        ForkJoinPool.commonPool().invoke(new ChunkTask(text, characters, 0, text.length, false));
+        return characters;
+    }
+
+    //encrypts len chars of src into dst, keyPos is the key position of src[srcOff]
+    //src and dst may be the same array. Returns the key position after the last char.
+    int encrypt(char[] src, int srcOff, char[] dst, int dstOff, int len, int keyPos) {
+        checkKey(len);
+        if (mode == 1 && encryptKernel != null)
+            return encryptKernel.shift(src, srcOff, dst, dstOff, len, keyPos);
+        else if (mode == 1)
+            return shiftAscii(src, srcOff, dst, dstOff, len, keyPos, encryptShift);
+        else
+            return shiftAlphabet(src, srcOff, dst, dstOff, len, keyPos, encryptShift);
+    }
+
+    //same as encrypt, but in the other direction
+    int decrypt(char[] src, int srcOff, char[] dst, int dstOff, int len, int keyPos) {
+        checkKey(len);
+        if (mode == 1 && decryptKernel != null)
+            return decryptKernel.shift(src, srcOff, dst, dstOff, len, keyPos);
+        else if (mode == 1)
+            return shiftAscii(src, srcOff, dst, dstOff, len, keyPos, decryptShift);
+        else
+            return shiftAlphabet(src, srcOff, dst, dstOff, len, keyPos, decryptShift);
+    }
+
+    int getKeyLength() {
+        return encryptShift.length;
+    }
+
+    //an empty key has no shift for the first char, so only empty text can go through it
+    private void checkKey(int len) {
+        if (len > 0 && encryptShift.length == 0) {
+            throw new IllegalArgumentException("Key must not be empty");
+        }
+    }
+
+    private int transform(char[] chars, int off, int len, int keyPos, boolean encrypt) {
+        if (encrypt)
+            return encrypt(chars, off, chars, off, len, keyPos);
+        else
+            return decrypt(chars, off, chars, off, len, keyPos);
+    }
+
+    private void transform(Reader in, Writer out, boolean encrypt) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int keyPos = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            keyPos = transform(buffer, 0, read, keyPos, encrypt);
+            out.write(buffer, 0, read);
+        }
+        out.flush();
+    }
+
+    private void transform(ReadableByteChannel in, WritableByteChannel out, Charset charset, boolean encrypt) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder();
+        CharsetEncoder encoder = charset.newEncoder();
+        ByteBuffer inBytes = ByteBuffer.allocate(BUFFER_SIZE);
+        //room for a whole decoded buffer plus a leftover surrogate, so decoding never overflows
+        CharBuffer chars = CharBuffer.allocate((int) (BUFFER_SIZE * decoder.maxCharsPerByte()) + 2);
+        ByteBuffer outBytes = ByteBuffer.allocate((int) (BUFFER_SIZE * encoder.maxBytesPerChar()));
+        int keyPos = 0;
+        boolean endOfInput = false;
+
+        while (!endOfInput) {
+            endOfInput = in.read(inBytes) == -1;
+            inBytes.flip();
+
+            //only the chars decoded in this round are new, the ones before are already transformed leftovers
+            int start = chars.position();
+            check(decoder.decode(inBytes, chars, endOfInput));
+            if (endOfInput) {
+                check(decoder.flush(chars));
+            }
+            inBytes.compact();
+            keyPos = transform(chars.array(), start, chars.position() - start, keyPos, encrypt);
+
+            chars.flip();
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, outBytes, endOfInput);
+                check(result);
+                write(out, outBytes);
+            } while (result.isOverflow());
+            chars.compact();
+        }
+
+        CoderResult result;
+        do {
+            result = encoder.flush(outBytes);
+            check(result);
+            write(out, outBytes);
+        } while (result.isOverflow());
+    }
+
+    private static void check(CoderResult result) throws IOException {
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+
+    private static void write(WritableByteChannel out, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    //throws one exception for all chars of the range outside 32..126, bad is how many there are
+    //the index is the one in src, so a parallel chunk reports the position in the whole text, not in the chunk
+    static void rejectOutOfRange(char[] src, int srcOff, int len, int bad) {
+        int first = srcOff;
+        while (src[first] >= 32 && src[first] <= 126) {
+            first++;
+        }
+        throw new IllegalArgumentException(bad + " characters outside the ASCII range 32-126, the first one at index " + first);
+    }
+
+    private static VigenereKernel vectorKernel(int[] shift) {
+        if (!VECTOR_API) {
+            return null;
+        }
+        try {
+            //loaded by name, so the class is never touched when the module is missing
+            return (VigenereKernel) Class.forName("VigenereVectorKernel")
+                    .getDeclaredConstructor(int[].class)
+                    .newInstance((Object) shift);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            //the key has shifts the vector kernel can not handle, or the class is not there
+            return null;
+        }
+    }
+
+    private int shiftAscii(char[] src, int srcOff, char[] dst, int dstOff, int len, int keyPos, int[] shift) {
+        int bad = 0;
+        for (int i = 0; i < len; i++) {
+            char a = src[srcOff + i];
+            if (a < 32 || a > 126) {
+                bad++;
+            }
+        }
+        if (bad > 0) {
+            rejectOutOfRange(src, srcOff, len, bad);
+        }
+
+        int ind = keyPos;
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (char) ((src[srcOff + i] + shift[ind]) % 96 + 32);
+            ind++;
+            if (ind >= shift.length) {
+                ind = 0;
+            }
+        }
+        return ind;
+    }
+
+    private int shiftAlphabet(char[] src, int srcOff, char[] dst, int dstOff, int len, int keyPos, int[] shift) {
+        int[] index = alphabetIndex;
+        char[] chars = alphabetChars;
+        int size = chars.length;
+        int ind = keyPos;
+        for (int i = 0; i < len; i++) {
+            char a = src[srcOff + i];
+            int pos = a < index.length ? index[a] : -1;
+            dst[dstOff + i] = chars[(pos + shift[ind]) % size];
+            ind++;
+            if (ind >= shift.length) {
+                ind = 0;
+            }
+        }
+        return ind;
+    }
+
+    private int indexOf(char c) {
+        return c < alphabetIndex.length ? alphabetIndex[c] : -1;
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final char[] src;
+        private final char[] dst;
+        private final int from;
+        private final int to;
+        private final boolean encrypt;
+
+        ChunkTask(char[] src, char[] dst, int from, int to, boolean encrypt) {
+            this.src = src;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+            this.encrypt = encrypt;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                //from is 0 for empty text, which is the only text an empty key gets here
+                int keyPos = from == 0 ? 0 : from % getKeyLength();
+                if (encrypt)
+                    encrypt(src, from, dst, from, to - from, keyPos);
+                else
+                    decrypt(src, from, dst, from, to - from, keyPos);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(src, dst, from, mid, encrypt), new ChunkTask(src, dst, mid, to, encrypt));
+        }
     }
 }
@@ -0,0 +1,5 @@
+//an ASCII mode loop for one direction and one key, the shifts are bound when the kernel is created
+interface VigenereKernel {
+    //transforms len chars of src into dst starting at key position keyPos and returns the key position after the last char
+    int shift(char[] src, int srcOff, char[] dst, int dstOff, int len, int keyPos);
+}
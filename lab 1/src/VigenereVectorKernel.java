@@ -0,0 +1,79 @@
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+//ASCII mode kernel on SIMD lanes, needs --add-modules jdk.incubator.vector at compile and run time
+//VigenereCipher only loads this class when the module is present, otherwise the scalar loop is used
+class VigenereVectorKernel implements VigenereKernel {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    private final int[] shift;
+    //the shifts repeated so that a full vector can be loaded from any key position
+    private final short[] keyStream;
+
+    VigenereVectorKernel(int[] shift) {
+        for (int s : shift) {
+            //with 32 <= a <= 126 the sum a + s stays in [0, 192), so % 96 is a single conditional subtraction
+            if (s < -32 || s > 65) {
+                throw new IllegalArgumentException("Key shift out of range for the vector kernel: " + s);
+            }
+        }
+        this.shift = shift;
+        int length = shift.length * ((SPECIES.length() + shift.length - 1) / shift.length + 1);
+        keyStream = new short[length];
+        for (int i = 0; i < length; i++) {
+            keyStream[i] = (short) shift[i % shift.length];
+        }
+    }
+
+    @Override
+    public int shift(char[] src, int srcOff, char[] dst, int dstOff, int len, int keyPos) {
+        check(src, srcOff, len);
+
+        int lanes = SPECIES.length();
+        int step = lanes % shift.length;
+        int ind = keyPos;
+        int i = 0;
+        for (; i <= len - lanes; i += lanes) {
+            ShortVector a = ShortVector.fromCharArray(SPECIES, src, srcOff + i);
+            ShortVector x = a.add(ShortVector.fromArray(SPECIES, keyStream, ind));
+            x = x.sub((short) 96, x.compare(VectorOperators.GE, 96));
+            x.add((short) 32).intoCharArray(dst, dstOff + i);
+            ind += step;
+            if (ind >= shift.length) {
+                ind -= shift.length;
+            }
+        }
+        for (; i < len; i++) {
+            int x = src[srcOff + i] + shift[ind];
+            dst[dstOff + i] = (char) ((x >= 96 ? x - 96 : x) + 32);
+            ind++;
+            if (ind >= shift.length) {
+                ind = 0;
+            }
+        }
+        return ind;
+    }
+
+    //validates the whole range before anything is written, one exception for all bad chars
+    private static void check(char[] src, int srcOff, int len) {
+        int lanes = SPECIES.length();
+        int bad = 0;
+        int i = 0;
+        for (; i <= len - lanes; i += lanes) {
+            ShortVector a = ShortVector.fromCharArray(SPECIES, src, srcOff + i);
+            VectorMask<Short> outside = a.compare(VectorOperators.LT, 32).or(a.compare(VectorOperators.GT, 126));
+            bad += outside.trueCount();
+        }
+        for (; i < len; i++) {
+            char a = src[srcOff + i];
+            if (a < 32 || a > 126) {
+                bad++;
+            }
+        }
+        if (bad > 0) {
+            VigenereCipher.rejectOutOfRange(src, srcOff, len, bad);
+        }
+    }
+}
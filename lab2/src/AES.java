@@ -1,70 +1,81 @@
-import javax.crypto.Cipher;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Base64;
 
 public class AES {
 
     public static String encrypt(String plaintext, String secretKey, String mode) throws Exception {
-        mode = getMode(mode);
-
-        Cipher cipher;
-        byte[] iv = new byte[16];
-        SecureRandom random = new SecureRandom();
-        random.nextBytes(iv);
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-
-        cipher = getCipher(secretKey, mode, Cipher.ENCRYPT_MODE, ivSpec);
-        byte[] encryptedBytes = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-
-        if (!mode.equals("ECB")) {
-            byte[] combined = new byte[iv.length + encryptedBytes.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encryptedBytes, 0, combined, iv.length, encryptedBytes.length);
-            return Base64.getEncoder().encodeToString(combined);
-        }
-        return Base64.getEncoder().encodeToString(encryptedBytes);
+        return AESContext.get(secretKey, mode).encrypt(plaintext);
     }
 
     public static String decrypt(String encryptedText, String secretKey, String mode) throws Exception {
-        mode = getMode(mode);
+        return AESContext.get(secretKey, mode).decrypt(encryptedText);
+    }
+
+    //for passphrases of any length: Base64 of the salt, then the same bytes as encrypt
+    //the key is derived with PBKDF2 (AESKeys), repeated calls with the same passphrase reuse the derived key
+    public static String encryptWithPassphrase(String plaintext, String passphrase, String mode) throws Exception {
+        byte[] salt = AESKeys.sessionSalt(passphrase);
+        AESContext context = AESContext.get(AESKeys.derive(passphrase, salt), mode);
+        byte[] encryptedBytes = context.encrypt(plaintext.getBytes(StandardCharsets.UTF_8));
+
+        byte[] combined = new byte[salt.length + encryptedBytes.length];
+        System.arraycopy(salt, 0, combined, 0, salt.length);
+        System.arraycopy(encryptedBytes, 0, combined, salt.length, encryptedBytes.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    public static String decryptWithPassphrase(String encryptedText, String passphrase, String mode) throws Exception {
         byte[] decodedBytes = Base64.getDecoder().decode(encryptedText);
-        byte[] iv = new byte[16];
-        byte[] encryptedBytes;
-
-        if (!mode.equals("ECB")) {
-            System.arraycopy(decodedBytes, 0, iv, 0, iv.length);
-            encryptedBytes = new byte[decodedBytes.length - iv.length];
-            System.arraycopy(decodedBytes, iv.length, encryptedBytes, 0, encryptedBytes.length);
-        } else {
-            encryptedBytes = decodedBytes;
+        if (decodedBytes.length < AESKeys.SALT_LENGTH) {
+            throw new IllegalArgumentException("Ciphertext is shorter than the salt");
         }
+        byte[] salt = Arrays.copyOfRange(decodedBytes, 0, AESKeys.SALT_LENGTH);
+        byte[] encryptedBytes = Arrays.copyOfRange(decodedBytes, AESKeys.SALT_LENGTH, decodedBytes.length);
 
-        Cipher cipher = getCipher(secretKey, mode, Cipher.DECRYPT_MODE, new IvParameterSpec(iv));
-        byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
-        return new String(decryptedBytes, StandardCharsets.UTF_8);
+        AESContext context = AESContext.get(AESKeys.derive(passphrase, salt), mode);
+        return new String(context.decrypt(encryptedBytes), StandardCharsets.UTF_8);
     }
 
-    private static Cipher getCipher(String secretKey, String mode, int cipherMode, IvParameterSpec ivSpec) throws Exception {
-        SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "AES");
-        Cipher cipher = Cipher.getInstance("AES/" + mode + "/PKCS5Padding");
+    //true if the key can be used as it is, otherwise it is treated as a passphrase
+    public static boolean isRawKey(String secretKey) {
+        int length = secretKey.getBytes(StandardCharsets.UTF_8).length;
+        return length == 16 || length == 24 || length == 32;
+    }
 
-        if (mode.equals("ECB")) {
-            cipher.init(cipherMode, keySpec);
-        } else {
-            cipher.init(cipherMode, keySpec, ivSpec);
-        }
-        return cipher;
+    //ByteBuffer versions for network and memory-mapped data, see AESContext.encrypt(ByteBuffer, ByteBuffer)
+    public static int encrypt(ByteBuffer src, ByteBuffer dst, String secretKey, String mode) throws Exception {
+        return AESContext.get(secretKey, mode).encrypt(src, dst);
+    }
+
+    public static int decrypt(ByteBuffer src, ByteBuffer dst, String secretKey, String mode) throws Exception {
+        return AESContext.get(secretKey, mode).decrypt(src, dst);
+    }
+
+    //encrypts all records under one key into one buffer, see AESBatch
+    public static AESBatch encryptBatch(Iterable<String> records, String secretKey, String mode) throws Exception {
+        return new AESBatch(AESContext.get(secretKey, mode)).encrypt(records);
+    }
+
+    //binary file to file encryption, streamed with constant memory, see AESContext.encryptFile
+    public static void encryptFile(String source, String target, String secretKey, String mode) throws Exception {
+        AESContext.get(secretKey, mode).encryptFile(Paths.get(source), Paths.get(target));
+    }
+
+    public static void decryptFile(String source, String target, String secretKey, String mode) throws Exception {
+        AESContext.get(secretKey, mode).decryptFile(Paths.get(source), Paths.get(target));
     }
 
-    private static String getMode(String mode) {
+    static String getMode(String mode) {
         switch (mode) {
             case "1": return "ECB";
             case "2": return "CBC";
             case "3": return "CFB";
+            case "4": return "CTR";
+            case "5": return "GCM";
             default: throw new IllegalArgumentException("Wrong mode!");
         }
     }
@@ -0,0 +1,132 @@
+import javax.crypto.Cipher;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+//encrypts many short records under one key into a single reusable buffer
+//record i is at [offset(i), offset(i) + length(i)) and looks like the bytes of AES.encrypt: a fresh IV, then the ciphertext
+//the buffers grow as needed and are kept for the next batch, one instance must not be used by two threads at once
+public class AESBatch {
+    private final AESContext context;
+    private final CharsetEncoder encoder;
+    private final byte[] iv;
+    private ByteBuffer encoded;
+    private byte[] buffer;
+    //offsets[i] is where record i starts, offsets[count] is the end of the last one
+    private int[] offsets;
+    private int count;
+
+    public AESBatch(AESContext context) {
+        this.context = context;
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.iv = new byte[context.getIvLength()];
+        this.encoded = ByteBuffer.allocate(256);
+        this.buffer = new byte[4096];
+        this.offsets = new int[65];
+    }
+
+    public AESBatch encrypt(Stream<String> records) throws GeneralSecurityException {
+        return encrypt(records.iterator());
+    }
+
+    public AESBatch encrypt(Iterable<String> records) throws GeneralSecurityException {
+        return encrypt(records.iterator());
+    }
+
+    //replaces the content of the buffer with the encrypted records
+    public AESBatch encrypt(Iterator<String> records) throws GeneralSecurityException {
+        count = 0;
+        int position = 0;
+        while (records.hasNext()) {
+            ByteBuffer plain = encode(records.next());
+            //the cipher is initialized per record only to change the IV, ECB is initialized once per thread
+            Cipher cipher;
+            if (iv.length == 0) {
+                cipher = context.encryptCipher(null);
+            } else {
+                AESContext.random().nextBytes(iv);
+                cipher = context.encryptCipher(iv);
+            }
+            ensureCapacity(position + iv.length + cipher.getOutputSize(plain.remaining()));
+            System.arraycopy(iv, 0, buffer, position, iv.length);
+            position += iv.length;
+            position += cipher.doFinal(plain.array(), 0, plain.remaining(), buffer, position);
+
+            if (count + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[++count] = position;
+        }
+        return this;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    //the shared buffer, only valid until the next encrypt
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int offset(int index) {
+        checkIndex(index);
+        return offsets[index];
+    }
+
+    public int length(int index) {
+        checkIndex(index);
+        return offsets[index + 1] - offsets[index];
+    }
+
+    //a copy of record i
+    public byte[] get(int index) {
+        return Arrays.copyOfRange(buffer, offset(index), offset(index) + length(index));
+    }
+
+    //record i in the text format of AES.encrypt, so AES.decrypt can read it
+    public String getBase64(int index) {
+        ByteBuffer record = ByteBuffer.wrap(buffer, offset(index), length(index));
+        return new String(Base64.getEncoder().encode(record).array(), StandardCharsets.ISO_8859_1);
+    }
+
+    //UTF-8 bytes of the record in the reusable buffer, positioned at 0
+    private ByteBuffer encode(String record) {
+        int needed = (int) Math.ceil(record.length() * (double) encoder.maxBytesPerChar());
+        if (encoded.capacity() < needed) {
+            encoded = ByteBuffer.allocate(Math.max(needed, encoded.capacity() * 2));
+        }
+        encoded.clear();
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(record);
+        CoderResult result = encoder.encode(chars, encoded, true);
+        if (result.isUnderflow()) {
+            result = encoder.flush(encoded);
+        }
+        if (!result.isUnderflow()) {
+            //only a String with a lone surrogate gets here
+            throw new IllegalArgumentException("Record can not be encoded as UTF-8: " + result);
+        }
+        encoded.flip();
+        return encoded;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + count);
+        }
+    }
+}
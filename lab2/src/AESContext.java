@@ -0,0 +1,333 @@
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//reusable AES state for one (key, mode) pair, safe to share between threads
+//the key spec is built once, every thread gets its own Cipher, and all contexts share one SecureRandom
+public class AESContext {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int IV_LENGTH = 16;
+    //GCM takes a 96-bit nonce and appends a 128-bit tag
+    static final int GCM_IV_LENGTH = 12;
+    static final int GCM_TAG_BITS = 128;
+    //chunk size for file streaming
+    private static final int FILE_BUFFER = 1 << 16;
+    //IV scratch space for the ByteBuffer methods, so they do not allocate one per call
+    private static final ThreadLocal<byte[]> IV_SCRATCH = ThreadLocal.withInitial(() -> new byte[IV_LENGTH]);
+    //contexts used by the static AES methods, the least recently used one is dropped
+    private static final int CACHE_SIZE = 64;
+    private static final Map<String, AESContext> CACHE = new LinkedHashMap<String, AESContext>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AESContext> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final String mode;
+    private final SecretKeySpec keySpec;
+    private final int ivLength;
+    private final ThreadLocal<Cipher> encryptCipher;
+    private final ThreadLocal<Cipher> decryptCipher;
+
+    //mode is the menu number, 1 for ECB, 2 for CBC, 3 for CFB, 4 for CTR, 5 for GCM
+    public AESContext(String secretKey, String mode) throws GeneralSecurityException {
+        this(keySpec(secretKey), mode);
+    }
+
+    //for keys that do not come straight from the user, e.g. the ones AESKeys derives from a passphrase
+    public AESContext(SecretKeySpec keySpec, String mode) {
+        this.mode = AES.getMode(mode);
+        this.keySpec = keySpec;
+        this.ivLength = this.mode.equals("GCM") ? GCM_IV_LENGTH : IV_LENGTH;
+        this.encryptCipher = ThreadLocal.withInitial(() -> newCipher());
+        this.decryptCipher = ThreadLocal.withInitial(() -> newCipher());
+    }
+
+    //the cached context for the key and mode
+    public static AESContext get(String secretKey, String mode) throws GeneralSecurityException {
+        String id = mode + ":" + secretKey;
+        AESContext context = cached(id);
+        if (context == null) {
+            context = cache(id, new AESContext(secretKey, mode));
+        }
+        return context;
+    }
+
+    public static AESContext get(SecretKeySpec keySpec, String mode) {
+        String id = mode + "#" + Base64.getEncoder().encodeToString(keySpec.getEncoded());
+        AESContext context = cached(id);
+        if (context == null) {
+            context = cache(id, new AESContext(keySpec, mode));
+        }
+        return context;
+    }
+
+    private static AESContext cached(String id) {
+        synchronized (CACHE) {
+            return CACHE.get(id);
+        }
+    }
+
+    private static AESContext cache(String id, AESContext context) {
+        synchronized (CACHE) {
+            CACHE.put(id, context);
+        }
+        return context;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    //same format as AES.encrypt: Base64 of IV followed by the ciphertext, no IV for ECB
+    public String encrypt(String plaintext) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(encrypt(plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public String decrypt(String encryptedText) throws GeneralSecurityException {
+        byte[] decryptedBytes = decrypt(Base64.getDecoder().decode(encryptedText));
+        return new String(decryptedBytes, StandardCharsets.UTF_8);
+    }
+
+    public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+        if (mode.equals("ECB")) {
+            return encryptCipher(null).doFinal(plaintext);
+        }
+        byte[] iv = new byte[ivLength];
+        RANDOM.nextBytes(iv);
+        Cipher cipher = encryptCipher(iv);
+        byte[] combined = new byte[ivLength + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(iv, 0, combined, 0, ivLength);
+        int length = ivLength + cipher.doFinal(plaintext, 0, plaintext.length, combined, ivLength);
+        if (length == combined.length) {
+            return combined;
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(combined, 0, result, 0, length);
+        return result;
+    }
+
+    public byte[] decrypt(byte[] encrypted) throws GeneralSecurityException {
+        if (mode.equals("ECB")) {
+            return decryptCipher(null, 0).doFinal(encrypted);
+        }
+        if (encrypted.length < ivLength) {
+            throw new IllegalArgumentException("Ciphertext is shorter than the IV");
+        }
+        return decryptCipher(encrypted, 0).doFinal(encrypted, ivLength, encrypted.length - ivLength);
+    }
+
+    //encrypts the remaining bytes of src into dst in the same layout as encrypt(byte[]), heap and direct buffers both work
+    //the IV is written straight into dst and the cipher works buffer to buffer, returns the number of bytes written
+    public int encrypt(ByteBuffer src, ByteBuffer dst) throws GeneralSecurityException {
+        if (mode.equals("ECB")) {
+            return encryptCipher(null).doFinal(src, dst);
+        }
+        byte[] iv = IV_SCRATCH.get();
+        RANDOM.nextBytes(iv);
+        Cipher cipher = encryptCipher(iv);
+        if (dst.remaining() < ivLength + cipher.getOutputSize(src.remaining())) {
+            throw new ShortBufferException("Need " + (ivLength + cipher.getOutputSize(src.remaining())) + " bytes in dst");
+        }
+        dst.put(iv, 0, ivLength);
+        return ivLength + cipher.doFinal(src, dst);
+    }
+
+    //reverse of encrypt(ByteBuffer, ByteBuffer), src holds the IV followed by the ciphertext
+    //if it fails, src is where it was, so e.g. after a ShortBufferException it can be retried with a larger dst
+    public int decrypt(ByteBuffer src, ByteBuffer dst) throws GeneralSecurityException {
+        if (mode.equals("ECB")) {
+            return decryptCipher(null, 0).doFinal(src, dst);
+        }
+        if (src.remaining() < ivLength) {
+            throw new IllegalArgumentException("Ciphertext is shorter than the IV");
+        }
+        int start = src.position();
+        byte[] iv = IV_SCRATCH.get();
+        src.get(iv, 0, ivLength);
+        try {
+            return decryptCipher(iv, 0).doFinal(src, dst);
+        } catch (GeneralSecurityException e) {
+            src.position(start);
+            throw e;
+        }
+    }
+
+    //the most bytes encrypt can produce for a plaintext of this length, to size dst
+    public int getEncryptedSize(int plaintextLength) {
+        switch (mode) {
+            case "CTR": return IV_LENGTH + plaintextLength;
+            case "GCM": return GCM_IV_LENGTH + plaintextLength + GCM_TAG_BITS / 8;
+            //PKCS5 always adds 1 to 16 bytes of padding
+            default: return getIvLength() + (plaintextLength / 16 + 1) * 16;
+        }
+    }
+
+    //streams source into target as raw binary: the IV (not for ECB) followed by the ciphertext
+    //memory use does not depend on the file size, the data only goes through two direct buffers
+    //GCM is not supported, its decryption holds back everything until the tag is checked, use AESSegmented
+    public void encryptFile(Path source, Path target) throws IOException, GeneralSecurityException {
+        encryptFile(source, target, new byte[0]);
+    }
+
+    //prefix is written in front of the IV as it is, e.g. the PBKDF2 salt of a passphrase
+    public void encryptFile(Path source, Path target, byte[] prefix) throws IOException, GeneralSecurityException {
+        checkStreamable();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.wrap(prefix));
+            Cipher cipher;
+            if (mode.equals("ECB")) {
+                cipher = encryptCipher(null);
+            } else {
+                byte[] iv = new byte[ivLength];
+                RANDOM.nextBytes(iv);
+                cipher = encryptCipher(iv);
+                writeFully(out, ByteBuffer.wrap(iv));
+            }
+            transfer(cipher, in, out);
+        }
+    }
+
+    //reverse of encryptFile
+    public void decryptFile(Path source, Path target) throws IOException, GeneralSecurityException {
+        decryptFile(source, target, 0);
+    }
+
+    //the first skip bytes of source are not ciphertext, e.g. a prefix written by encryptFile
+    public void decryptFile(Path source, Path target, int skip) throws IOException, GeneralSecurityException {
+        checkStreamable();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            in.position(skip);
+            Cipher cipher;
+            if (mode.equals("ECB")) {
+                cipher = decryptCipher(null, 0);
+            } else {
+                ByteBuffer iv = ByteBuffer.allocate(ivLength);
+                while (iv.hasRemaining()) {
+                    if (in.read(iv) == -1) {
+                        throw new EOFException("File is shorter than the IV: " + source);
+                    }
+                }
+                cipher = decryptCipher(iv.array(), 0);
+            }
+            transfer(cipher, in, out);
+        }
+    }
+
+    //this thread's encrypting Cipher, ready for a new message with the given IV (ignored for ECB)
+    Cipher encryptCipher(byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = encryptCipher.get();
+        if (mode.equals("ECB")) {
+            //also drops whatever a failed update/doFinal left buffered
+            cipher.init(Cipher.ENCRYPT_MODE, keySpec);
+        } else {
+            cipher.init(Cipher.ENCRYPT_MODE, keySpec, parameters(iv, 0));
+        }
+        return cipher;
+    }
+
+    //this thread's decrypting Cipher, ready for a new message whose IV is at iv[offset]
+    Cipher decryptCipher(byte[] iv, int offset) throws GeneralSecurityException {
+        Cipher cipher = decryptCipher.get();
+        if (mode.equals("ECB")) {
+            //also drops whatever a failed update/doFinal left buffered, e.g. from a truncated file
+            cipher.init(Cipher.DECRYPT_MODE, keySpec);
+        } else {
+            cipher.init(Cipher.DECRYPT_MODE, keySpec, parameters(iv, offset));
+        }
+        return cipher;
+    }
+
+    private static void transfer(Cipher cipher, FileChannel in, FileChannel out) throws IOException, GeneralSecurityException {
+        ByteBuffer input = ByteBuffer.allocateDirect(FILE_BUFFER);
+        //room for a full chunk plus what the cipher still holds back and the padding
+        ByteBuffer output = ByteBuffer.allocateDirect(FILE_BUFFER + 2 * IV_LENGTH);
+        while (in.read(input) != -1) {
+            input.flip();
+            cipher.update(input, output);
+            input.clear();
+            output.flip();
+            writeFully(out, output);
+            output.clear();
+        }
+        input.flip();
+        cipher.doFinal(input, output);
+        output.flip();
+        writeFully(out, output);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    //the raw key bytes as an AES key, they must be 16, 24 or 32 bytes long
+    static SecretKeySpec keySpec(String secretKey) throws InvalidKeyException {
+        byte[] key = secretKey.getBytes(StandardCharsets.UTF_8);
+        //fail here on a bad key, not later on some worker thread
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new InvalidKeyException("Invalid AES key length: " + key.length + " bytes");
+        }
+        return new SecretKeySpec(key, "AES");
+    }
+
+    static String transformation(String mode) {
+        //the stream modes CTR and GCM need no padding
+        if (mode.equals("CTR") || mode.equals("GCM"))
+            return "AES/" + mode + "/NoPadding";
+        return "AES/" + mode + "/PKCS5Padding";
+    }
+
+    SecretKeySpec getKeySpec() {
+        return keySpec;
+    }
+
+    int getIvLength() {
+        return mode.equals("ECB") ? 0 : ivLength;
+    }
+
+    private AlgorithmParameterSpec parameters(byte[] iv, int offset) {
+        if (mode.equals("GCM"))
+            return new GCMParameterSpec(GCM_TAG_BITS, iv, offset, GCM_IV_LENGTH);
+        return new IvParameterSpec(iv, offset, IV_LENGTH);
+    }
+
+    private void checkStreamable() {
+        if (mode.equals("GCM")) {
+            throw new IllegalArgumentException("GCM can not be streamed to a file, use AESSegmented");
+        }
+    }
+
+    static SecureRandom random() {
+        return RANDOM;
+    }
+
+    private Cipher newCipher() {
+        try {
+            return Cipher.getInstance(transformation(mode));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//turns passphrases of any length into AES keys with PBKDF2, and remembers the results
+//a derivation takes tens of milliseconds on purpose, so the same passphrase and salt is only derived once
+//both caches are LRU and bounded, the least recently used entry is dropped
+public class AESKeys {
+    public static final int SALT_LENGTH = 16;
+    private static final int ITERATIONS = 65536;
+    private static final int KEY_LENGTH = 256;
+    private static final int CACHE_SIZE = 128;
+
+    //(passphrase, salt) -> derived key
+    private static final Map<String, SecretKeySpec> KEYS = lru();
+    //passphrase -> the salt used to encrypt with it in this process, so new messages hit the key cache
+    private static final Map<String, byte[]> SALTS = lru();
+
+    private AESKeys() {
+    }
+
+    public static SecretKeySpec derive(String passphrase, byte[] salt) throws GeneralSecurityException {
+        String id = Base64.getEncoder().encodeToString(salt) + ":" + passphrase;
+        synchronized (KEYS) {
+            SecretKeySpec key = KEYS.get(id);
+            if (key != null) {
+                return key;
+            }
+        }
+        //derived outside the lock, other passphrases do not have to wait for this one
+        PBEKeySpec spec = new PBEKeySpec(passphrase.toCharArray(), salt, ITERATIONS, KEY_LENGTH);
+        SecretKeySpec key;
+        try {
+            SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            key = new SecretKeySpec(skf.generateSecret(spec).getEncoded(), "AES");
+        } finally {
+            spec.clearPassword();
+        }
+        synchronized (KEYS) {
+            KEYS.put(id, key);
+        }
+        return key;
+    }
+
+    //a random salt, created on first use of the passphrase and then reused for it
+    public static byte[] sessionSalt(String passphrase) {
+        synchronized (SALTS) {
+            byte[] salt = SALTS.get(passphrase);
+            if (salt == null) {
+                salt = new byte[SALT_LENGTH];
+                AESContext.random().nextBytes(salt);
+                SALTS.put(passphrase, salt);
+            }
+            return Arrays.copyOf(salt, salt.length);
+        }
+    }
+
+    private static <V> Map<String, V> lru() {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+}
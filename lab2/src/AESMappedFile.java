@@ -0,0 +1,244 @@
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+//file encryption for very large files: both files are memory-mapped window by window,
+//and the cipher works straight between the mapped regions, with no copies through user-space buffers
+//the result has the same format as AESContext.encryptFile, so the two can read each other's files
+//after every window the position is saved to <target>.checkpoint, a new run with the same files continues from there
+//the cipher state at a window start is rebuilt from the file: the previous ciphertext block for CBC and CFB,
+//the IV plus the block number for CTR, nothing for ECB. GCM can not be resumed that way and is not supported
+public class AESMappedFile {
+    public static final long DEFAULT_WINDOW = 64L << 20;
+    private static final int BLOCK = 16;
+
+    private final AESContext context;
+    private final String mode;
+    private final long window;
+
+    public AESMappedFile(AESContext context) {
+        this(context, DEFAULT_WINDOW);
+    }
+
+    public AESMappedFile(AESContext context, long window) {
+        if (context.getMode().equals("GCM")) {
+            throw new IllegalArgumentException("GCM can not be resumed in the middle, use AESSegmented");
+        }
+        if (window <= 0 || window % BLOCK != 0 || window > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Window must be a positive multiple of " + BLOCK + " below 2 GB");
+        }
+        this.context = context;
+        this.mode = context.getMode();
+        this.window = window;
+    }
+
+    public static Path checkpointOf(Path target) {
+        return Paths.get(target + ".checkpoint");
+    }
+
+    public void encrypt(Path source, Path target) throws IOException, GeneralSecurityException {
+        encrypt(source, target, new byte[0]);
+    }
+
+    //prefix is written in front of the IV as it is, e.g. the PBKDF2 salt of a passphrase
+    public void encrypt(Path source, Path target, byte[] prefix) throws IOException, GeneralSecurityException {
+        Path checkpoint = checkpointOf(target);
+        int ivLength = context.getIvLength();
+        int header = prefix.length + ivLength;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long length = in.size();
+            long done = resumePosition(checkpoint, length, target);
+            try (FileChannel out = open(target, done > 0)) {
+                byte[] iv = new byte[ivLength];
+                if (done > 0) {
+                    readFully(out, ByteBuffer.wrap(iv), prefix.length);
+                } else {
+                    writeFully(out, ByteBuffer.wrap(prefix), 0);
+                    AESContext.random().nextBytes(iv);
+                    writeFully(out, ByteBuffer.wrap(iv), prefix.length);
+                }
+                Cipher cipher = cipher(Cipher.ENCRYPT_MODE, iv, out, header, done);
+
+                //with padding the last, partial block is padded on the heap and written on its own
+                boolean padded = !mode.equals("CTR");
+                long mapped = padded ? length - length % BLOCK : length;
+                while (done < mapped) {
+                    long size = Math.min(window, mapped - done);
+                    MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, done, size);
+                    MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, header + done, size);
+                    if (done + size < mapped || padded) {
+                        cipher.update(src, dst);
+                    } else {
+                        cipher.doFinal(src, dst);
+                    }
+                    dst.force();
+                    done += size;
+                    save(checkpoint, done, length);
+                }
+                if (padded) {
+                    byte[] last = new byte[BLOCK];
+                    int tail = (int) (length - mapped);
+                    readFully(in, ByteBuffer.wrap(last, 0, tail), mapped);
+                    //PKCS5: every padding byte holds the number of padding bytes
+                    Arrays.fill(last, tail, BLOCK, (byte) (BLOCK - tail));
+                    writeFully(out, ByteBuffer.wrap(cipher.doFinal(last)), header + mapped);
+                }
+                out.force(true);
+            }
+        }
+        Files.deleteIfExists(checkpoint);
+    }
+
+    public void decrypt(Path source, Path target) throws IOException, GeneralSecurityException {
+        decrypt(source, target, 0);
+    }
+
+    //the first skip bytes of source are not ciphertext, e.g. a prefix written by encrypt
+    public void decrypt(Path source, Path target, int skip) throws IOException, GeneralSecurityException {
+        Path checkpoint = checkpointOf(target);
+        int ivLength = context.getIvLength();
+        int header = skip + ivLength;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long length = in.size() - header;
+            boolean padded = !mode.equals("CTR");
+            if (length < 0 || (padded && (length == 0 || length % BLOCK != 0))) {
+                throw new IllegalArgumentException("Not a complete ciphertext: " + source);
+            }
+            long done = resumePosition(checkpoint, length, target);
+            try (FileChannel out = open(target, done > 0)) {
+                byte[] iv = new byte[ivLength];
+                readFully(in, ByteBuffer.wrap(iv), skip);
+                Cipher cipher = cipher(Cipher.DECRYPT_MODE, iv, in, header, done);
+
+                //with padding the last block is decrypted on the heap, to strip the padding before it is written
+                long mapped = padded ? length - BLOCK : length;
+                while (done < mapped) {
+                    long size = Math.min(window, mapped - done);
+                    MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, header + done, size);
+                    MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, done, size);
+                    if (done + size < mapped || padded) {
+                        cipher.update(src, dst);
+                    } else {
+                        cipher.doFinal(src, dst);
+                    }
+                    dst.force();
+                    done += size;
+                    save(checkpoint, done, length);
+                }
+                if (padded) {
+                    byte[] last = new byte[BLOCK];
+                    readFully(in, ByteBuffer.wrap(last), header + mapped);
+                    last = cipher.doFinal(last);
+                    int pad = last[BLOCK - 1];
+                    if (pad < 1 || pad > BLOCK) {
+                        throw new BadPaddingException("Wrong key or corrupted file");
+                    }
+                    for (int i = BLOCK - pad; i < BLOCK; i++) {
+                        if (last[i] != pad) {
+                            throw new BadPaddingException("Wrong key or corrupted file");
+                        }
+                    }
+                    writeFully(out, ByteBuffer.wrap(last, 0, BLOCK - pad), mapped);
+                }
+                out.force(true);
+            }
+        }
+        Files.deleteIfExists(checkpoint);
+    }
+
+    //a cipher without padding, set up to continue at byte done of the ciphertext body that starts at header in chain
+    private Cipher cipher(int cipherMode, byte[] iv, FileChannel chain, int header, long done) throws IOException, GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/" + mode + "/NoPadding");
+        switch (mode) {
+            case "ECB":
+                cipher.init(cipherMode, context.getKeySpec());
+                break;
+            case "CTR":
+                cipher.init(cipherMode, context.getKeySpec(), new IvParameterSpec(addCounter(iv, done / BLOCK)));
+                break;
+            default:
+                //CBC and CFB chain on the previous ciphertext block
+                byte[] chained = iv;
+                if (done > 0) {
+                    chained = new byte[BLOCK];
+                    readFully(chain, ByteBuffer.wrap(chained), header + done - BLOCK);
+                }
+                cipher.init(cipherMode, context.getKeySpec(), new IvParameterSpec(chained));
+        }
+        return cipher;
+    }
+
+    //the 128-bit big-endian counter iv + blocks
+    private static byte[] addCounter(byte[] iv, long blocks) {
+        byte[] counter = Arrays.copyOf(iv, iv.length);
+        long carry = blocks;
+        for (int i = counter.length - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xff) + (carry & 0xff);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return counter;
+    }
+
+    //where to continue: the checkpointed position if it belongs to this job, otherwise 0
+    private static long resumePosition(Path checkpoint, long length, Path target) throws IOException {
+        if (!Files.exists(checkpoint) || !Files.exists(target)) {
+            return 0;
+        }
+        ByteBuffer saved = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+        if (saved.remaining() != 16) {
+            return 0;
+        }
+        long done = saved.getLong();
+        long savedLength = saved.getLong();
+        if (savedLength != length || done < 0 || done > length || done % BLOCK != 0) {
+            return 0;
+        }
+        return done;
+    }
+
+    //the data of the window is forced to disk before the checkpoint, so the checkpoint is never ahead of it
+    private static void save(Path checkpoint, long done, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(checkpoint, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(16).putLong(done).putLong(length);
+            buffer.flip();
+            writeFully(channel, buffer, 0);
+            channel.force(true);
+        }
+    }
+
+    private static FileChannel open(Path target, boolean resume) throws IOException {
+        if (resume) {
+            return FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
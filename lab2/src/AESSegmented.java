@@ -0,0 +1,170 @@
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//AES-GCM for large payloads: the plaintext is cut into fixed-size segments that are sealed independently,
+//so all cores can work on them, and every segment is authenticated
+//format: header (segment size int, plaintext length long, nonce prefix 8 bytes), then every segment's ciphertext and tag
+//segment i uses the nonce prefix followed by i, its additional data is the header, i and a last-segment flag,
+//so segments can not be swapped, dropped or moved to another message
+public class AESSegmented {
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+    private static final int HEADER_LENGTH = 4 + 8 + 8;
+    private static final int TAG_LENGTH = AESContext.GCM_TAG_BITS / 8;
+
+    private final SecretKeySpec keySpec;
+    private final int segmentSize;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Cipher> ciphers;
+
+    public AESSegmented(String secretKey) throws GeneralSecurityException {
+        this(secretKey, DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public AESSegmented(String secretKey, int segmentSize, ForkJoinPool pool) throws GeneralSecurityException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.keySpec = AESContext.keySpec(secretKey);
+        this.segmentSize = segmentSize;
+        this.pool = pool;
+        this.ciphers = ThreadLocal.withInitial(() -> {
+            try {
+                return Cipher.getInstance(AESContext.transformation("GCM"));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+        int segments = segmentCount(plaintext.length, segmentSize);
+        byte[] sealed = new byte[HEADER_LENGTH + plaintext.length + segments * TAG_LENGTH];
+        ByteBuffer header = ByteBuffer.wrap(sealed, 0, HEADER_LENGTH);
+        header.putInt(segmentSize);
+        header.putLong(plaintext.length);
+        byte[] prefix = new byte[8];
+        AESContext.random().nextBytes(prefix);
+        header.put(prefix);
+
+        run(new SegmentTask(true, plaintext, sealed, sealed, segmentSize, plaintext.length, 0, segments));
+        return sealed;
+    }
+
+    //throws AEADBadTagException if any segment or the header was modified
+    public byte[] decrypt(byte[] sealed) throws GeneralSecurityException {
+        if (sealed.length < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Input is shorter than the header");
+        }
+        ByteBuffer header = ByteBuffer.wrap(sealed, 0, HEADER_LENGTH);
+        int size = header.getInt();
+        long length = header.getLong();
+        if (size <= 0 || length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid header");
+        }
+        int segments = segmentCount((int) length, size);
+        if (sealed.length != HEADER_LENGTH + length + (long) segments * TAG_LENGTH) {
+            throw new IllegalArgumentException("Input length does not match the header");
+        }
+
+        byte[] plaintext = new byte[(int) length];
+        run(new SegmentTask(false, sealed, plaintext, sealed, size, (int) length, 0, segments));
+        return plaintext;
+    }
+
+    private void run(SegmentTask task) throws GeneralSecurityException {
+        try {
+            pool.invoke(task);
+        } catch (SegmentException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static int segmentCount(int length, int segmentSize) {
+        //an empty payload still gets one (empty) segment, so it is authenticated too
+        return Math.max(1, (int) ((length + (long) segmentSize - 1) / segmentSize));
+    }
+
+    //seals or opens the segments [from, to), splitting the range in halves
+    private class SegmentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean encrypt;
+        private final byte[] src;
+        private final byte[] dst;
+        private final byte[] header;
+        private final int size;
+        private final int length;
+        private final int from;
+        private final int to;
+
+        SegmentTask(boolean encrypt, byte[] src, byte[] dst, byte[] header, int size, int length, int from, int to) {
+            this.encrypt = encrypt;
+            this.src = src;
+            this.dst = dst;
+            this.header = header;
+            this.size = size;
+            this.length = length;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SegmentTask(encrypt, src, dst, header, size, length, from, mid),
+                        new SegmentTask(encrypt, src, dst, header, size, length, mid, to));
+                return;
+            }
+            try {
+                for (int i = from; i < to; i++) {
+                    segment(i);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new SegmentException(e);
+            }
+        }
+
+        private void segment(int index) throws GeneralSecurityException {
+            int plainOffset = index * size;
+            int plainLength = Math.min(size, length - plainOffset);
+            int sealedOffset = HEADER_LENGTH + plainOffset + index * TAG_LENGTH;
+            boolean last = index == segmentCount(length, size) - 1;
+
+            byte[] nonce = new byte[AESContext.GCM_IV_LENGTH];
+            System.arraycopy(header, HEADER_LENGTH - 8, nonce, 0, 8);
+            ByteBuffer.wrap(nonce, 8, 4).putInt(index);
+            byte[] aad = new byte[HEADER_LENGTH + 5];
+            System.arraycopy(header, 0, aad, 0, HEADER_LENGTH);
+            ByteBuffer.wrap(aad, HEADER_LENGTH, 5).putInt(index).put((byte) (last ? 1 : 0));
+
+            Cipher cipher = ciphers.get();
+            cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, keySpec,
+                    new GCMParameterSpec(AESContext.GCM_TAG_BITS, nonce));
+            cipher.updateAAD(aad);
+            if (encrypt)
+                cipher.doFinal(src, plainOffset, plainLength, dst, sealedOffset);
+            else
+                cipher.doFinal(src, sealedOffset, plainLength + TAG_LENGTH, dst, plainOffset);
+        }
+    }
+
+    //carries a checked exception out of a fork-join task
+    private static class SegmentException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SegmentException(GeneralSecurityException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized GeneralSecurityException getCause() {
+            return (GeneralSecurityException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//non-interactive mode of Main, for scripts and pipelines
+//  -e|-d  encrypt or decrypt
+//  -k     secret key (16, 24 or 32 bytes) or a passphrase, as in Main
+//         a passphrase key is derived with PBKDF2 (AESKeys) and its salt goes in front of every encrypted file
+//  -m     mode, same numbers as the menu (GCM can not be streamed, so 1-4)
+//  -i     input file or directory
+//  -o     output file or directory, a directory tree is mirrored
+//  -t     number of worker threads, the number of cores by default
+//  -map   memory-map the files window by window (AESMappedFile), an interrupted run continues where it stopped
+//files are processed with AESContext.encryptFile/decryptFile, a summary with throughput and latency is printed at the end
+public class BatchRunner {
+    private Boolean encrypt;
+    private String key;
+    private String mode;
+    private Path input;
+    private Path output;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean mapped;
+
+    //returns the exit code: 0 if every file worked, 1 if some failed, 2 for bad arguments
+    public static int run(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error " + e.getMessage());
+            System.err.println("Usage: (-e|-d) -k key -m mode -i input -o output [-t threads] [-map]");
+            return 2;
+        }
+        try {
+            return runner.process();
+        } catch (Exception e) {
+            System.err.println("Error " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String flag = args[i];
+            if (flag.equals("-e") || flag.equals("-d")) {
+                encrypt = flag.equals("-e");
+                continue;
+            }
+            if (flag.equals("-map")) {
+                mapped = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + flag);
+            }
+            String value = args[++i];
+            switch (flag) {
+                case "-k": key = value; break;
+                case "-m": mode = value; break;
+                case "-i": input = Paths.get(value); break;
+                case "-o": output = Paths.get(value); break;
+                case "-t": threads = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown flag " + flag);
+            }
+        }
+        if (encrypt == null || key == null || mode == null || input == null || output == null) {
+            throw new IllegalArgumentException("-e or -d, -k, -m, -i and -o are required");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        if (AES.getMode(mode).equals("GCM")) {
+            throw new IllegalArgumentException("GCM can not be streamed to files, use mode 1-4");
+        }
+    }
+
+    private int process() throws Exception {
+        boolean raw = AES.isRawKey(key);
+        //one salt for the whole run, so the key is derived once for all files
+        byte[] salt = raw ? new byte[0] : AESKeys.sessionSalt(key);
+
+        List<Path[]> jobs = new ArrayList<>();
+        if (Files.isDirectory(input)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(input)) {
+                files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                jobs.add(new Path[]{file, output.resolve(input.relativize(file).toString())});
+            }
+        } else {
+            jobs.add(new Path[]{input, output});
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long[] latencies = new long[jobs.size()];
+        AtomicLong bytes = new AtomicLong();
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            int index = i;
+            Path source = jobs.get(i)[0];
+            Path target = jobs.get(i)[1];
+            futures.add(pool.submit(() -> {
+                long begin = System.nanoTime();
+                if (target.getParent() != null) {
+                    Files.createDirectories(target.getParent());
+                }
+                if (encrypt) {
+                    AESContext context = context(raw, salt);
+                    if (mapped)
+                        new AESMappedFile(context).encrypt(source, target, salt);
+                    else
+                        context.encryptFile(source, target, salt);
+                } else {
+                    AESContext context = context(raw, raw ? salt : readSalt(source));
+                    if (mapped)
+                        new AESMappedFile(context).decrypt(source, target, salt.length);
+                    else
+                        context.decryptFile(source, target, salt.length);
+                }
+                latencies[index] = System.nanoTime() - begin;
+                bytes.addAndGet(Files.size(source));
+                return null;
+            }));
+        }
+
+        int failed = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (Exception e) {
+                failed++;
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Failed " + jobs.get(i)[0] + ": " + cause);
+            }
+        }
+        pool.shutdown();
+        long elapsed = System.nanoTime() - start;
+
+        printSummary(jobs.size() - failed, failed, bytes.get(), elapsed, latencies);
+        return failed == 0 ? 0 : 1;
+    }
+
+    //the cached context for the raw key, or for the key derived from the passphrase and salt
+    private AESContext context(boolean raw, byte[] salt) throws GeneralSecurityException {
+        return raw ? AESContext.get(key, mode) : AESContext.get(AESKeys.derive(key, salt), mode);
+    }
+
+    private static byte[] readSalt(Path source) throws IOException {
+        byte[] salt = new byte[AESKeys.SALT_LENGTH];
+        try (InputStream in = Files.newInputStream(source)) {
+            if (in.readNBytes(salt, 0, salt.length) < salt.length) {
+                throw new EOFException("Too short for a salt: " + source);
+            }
+        }
+        return salt;
+    }
+
+    private void printSummary(int done, int failed, long bytes, long elapsed, long[] latencies) {
+        double seconds = elapsed / 1e9;
+        long[] sorted = Arrays.stream(latencies).filter(l -> l > 0).sorted().toArray();
+        System.out.println((encrypt ? "Encrypted " : "Decrypted ") + done + " files, " + failed + " failed, "
+                + bytes + " bytes in " + String.format("%.3f", seconds) + " s with " + threads + " threads");
+        System.out.println(String.format("Throughput: %.2f MB/s, %.1f files/s",
+                bytes / 1e6 / seconds, done / seconds));
+        if (sorted.length > 0) {
+            System.out.println(String.format("Latency per file (ms): min %.3f, avg %.3f, p50 %.3f, p95 %.3f, max %.3f",
+                    sorted[0] / 1e6,
+                    Arrays.stream(sorted).average().getAsDouble() / 1e6,
+                    percentile(sorted, 0.50) / 1e6,
+                    percentile(sorted, 0.95) / 1e6,
+                    sorted[sorted.length - 1] / 1e6));
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
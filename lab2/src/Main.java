@@ -5,7 +5,13 @@ public class Main {
 
     public static void Encrypt(String plaintext, String secretKey, String mode) throws Exception {
         String filename="encrypted.txt";
-        String encrypted = AES.encrypt(plaintext,secretKey,mode);
+        String encrypted;
+        if (AES.isRawKey(secretKey)) {
+            encrypted = AES.encrypt(plaintext, secretKey, mode);
+        } else {
+            //any other length is a passphrase, the key is derived from it
+            encrypted = AES.encryptWithPassphrase(plaintext, secretKey, mode);
+        }
         System.out.println("Encrypted text: " + encrypted);
 
         AES.saveToFile(filename, encrypted);
@@ -15,11 +21,21 @@ public class Main {
     public static void Decrypt(String secretKey, String mode) throws Exception {
         String filename="encrypted.txt";
         String encrypted = AES.readFromFile(filename);
-        String decrypted = AES.decrypt(encrypted, secretKey, mode);
+        String decrypted;
+        if (AES.isRawKey(secretKey)) {
+            decrypted = AES.decrypt(encrypted, secretKey, mode);
+        } else {
+            decrypted = AES.decryptWithPassphrase(encrypted, secretKey, mode);
+        }
         System.out.println("Decrypted text: " + decrypted);
     }
 
     public static void main(String[] args) {
+        //with arguments it runs without questions, see BatchRunner
+        if (args.length > 0) {
+            System.exit(BatchRunner.run(args));
+        }
+
         Scanner in = new Scanner(System.in);
         boolean run = true;
         while(run) {
@@ -28,7 +44,7 @@ public class Main {
                 String choice = in.nextLine().toUpperCase();
                 System.out.println();
 
-                System.out.println("Enter the 16 bits long secret key:");
+                System.out.println("Enter the 16 bits long secret key, or a passphrase of any other length:");
                 String secretKey = in.nextLine();
                 System.out.println();
 
@@ -36,6 +52,8 @@ public class Main {
                 System.out.println("Enter 1 for ECB");
                 System.out.println("Enter 2 for CBC");
                 System.out.println("Enter 3 for CFB");
+                System.out.println("Enter 4 for CTR");
+                System.out.println("Enter 5 for GCM");
                 String mode = in.nextLine();
                 System.out.println();
 
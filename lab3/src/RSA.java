@@ -1,5 +1,10 @@
 import java.io.*;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.*;
 
 public class RSA {
@@ -34,21 +39,39 @@ public class RSA {
         return t;
     }
 
-    // Factorize n to retrieve p and q
-    public static int[] factorizeN(int n) {
-        for (int i = 2; i <= 1000; i++) {
-            if (n % i == 0 && isPrime(i)) {
-                int q = n / i;
-                if (isPrime(q)) return new int[]{i, q};
-            }
+    private static final Path CONTAINER_FILE = Paths.get("rsa.bin");
+    private static final Path TEXT_FILE = Paths.get("rsa.txt");
+    private static final Path PRIVATE_FILE = Paths.get("rsa_private.txt");
+
+    //keys from menu option 3, the text is packed into padded blocks instead of one number per character
+    private static final int BLOCK_KEY_BITS = 2048;
+
+    //-Drsa.parallelism=N runs the blocks on a pool of N threads, 1 is sequential, default is the common pool
+    private static RSAPipeline pipeline() {
+        Integer parallelism = Integer.getInteger("rsa.parallelism");
+        if (parallelism == null)
+            return new RSAPipeline();
+        return new RSAPipeline(parallelism, RSAPipeline.DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+
+    //the primes are the private key, so the file is created readable by the owner only (0600) where the file system has POSIX permissions
+    private static void writePrivate(Path file, String primes) throws IOException {
+        Files.deleteIfExists(file);
+        if (file.toAbsolutePath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+        try (Writer keyWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            keyWriter.write(primes);
         }
-        throw new IllegalArgumentException("No prime factors found for n = " + n);
     }
 
     public static void main(String[] args) throws Exception {
         Scanner sc = new Scanner(System.in);
+        RSAPipeline pipeline = pipeline();
 
-        System.out.println("Enter 1 for decryption, and 2 for Encryption");
+        System.out.println("Enter 1 for decryption, 2 for Encryption, and 3 for Encryption with a generated " + BLOCK_KEY_BITS + "-bit key");
         int t = sc.nextInt();
         if (t == 2) {
 
@@ -64,64 +87,94 @@ public class RSA {
                 return;
             }
 
-            int n = p * q;
-            int phi = (p - 1) * (q - 1);
-
-            // Choose public exponent
-            int e = 3;
-            while (gcd(e, phi) != 1) e++;
-
-            // Compute private key
-            int d = modInverse(e, phi);
+            // n, phi, e and d on BigInteger, p * q does not overflow
+            RSAKeyPair keyPair = RSAKeyPair.fromPrimes(BigInteger.valueOf(p), BigInteger.valueOf(q));
+            BigInteger n = keyPair.getN();
+            BigInteger e = keyPair.getE();
 
             // Input plaintext message
             System.out.print("Enter text to encrypt: ");
             String message = sc.nextLine();
 
-            // Encrypt each character
-            List<BigInteger> encryptedList = new ArrayList<>();
+            // Encrypt each character, the blocks are independent and run in parallel
+            List<BigInteger> chars = new ArrayList<>();
             for (char c : message.toCharArray()) {
-                BigInteger m = BigInteger.valueOf((int) c);
-                BigInteger cipher = m.modPow(BigInteger.valueOf(e), BigInteger.valueOf(n));
-                encryptedList.add(cipher);
+                chars.add(BigInteger.valueOf((int) c));
             }
+            List<BigInteger> encryptedList = pipeline.encrypt(keyPair, chars);
 
             // Save encrypted data and public key to file
-            FileWriter writer = new FileWriter("rsa.txt");
-            for (BigInteger enc : encryptedList) {
-                writer.write(enc.toString() + " ");
-            }
-            writer.write("\n" + n + " " + e);
-            writer.close();
+            new RSAContainer(RSAContainer.CHARS, n, e, encryptedList, null).write(CONTAINER_FILE);
 
             System.out.println("\nEncrypted text (numbers): " + encryptedList);
             System.out.println("Public key: (n = " + n + ", e = " + e + ")");
-            System.out.println("Saved to file: rsa.txt");
+            System.out.println("Saved to file: " + CONTAINER_FILE);
+        } else if (t == 3) {
+            sc.nextLine();
+            RSAKeyPair keyPair = RSAKeyPair.generate(BLOCK_KEY_BITS);
+            BigInteger n = keyPair.getN();
+            BigInteger e = keyPair.getE();
+
+            // Input plaintext message
+            System.out.print("Enter text to encrypt: ");
+            byte[] message = sc.nextLine().getBytes(StandardCharsets.UTF_8);
+
+            // Short messages go into one padded block, longer ones are encrypted with AES
+            // and only the AES key goes through RSA, so there is one RSA operation per message
+            RSAContainer container;
+            if (message.length <= RSABlocks.maxDataLength(keyPair)) {
+                container = new RSAContainer(RSAContainer.BLOCKS, n, e, RSABlocks.encrypt(keyPair, message, pipeline), null);
+            } else {
+                RSAHybrid hybrid = RSAHybrid.encrypt(keyPair, message);
+                container = new RSAContainer(RSAContainer.HYBRID, n, e, Collections.singletonList(hybrid.getWrappedKey()), hybrid.getPayload());
+            }
+            container.write(CONTAINER_FILE);
+
+            // A key this size can not be factored, so the primes are saved for decryption
+            writePrivate(PRIVATE_FILE, keyPair.getP() + " " + keyPair.getQ());
+
+            System.out.println("\nEncrypted blocks: " + container.getBlocks().size() + (container.getType() == RSAContainer.HYBRID ? " (AES key, message encrypted with AES-GCM)" : ""));
+            System.out.println("Public key: (n = " + n + ", e = " + e + ")");
+            System.out.println("Saved to files: " + CONTAINER_FILE + ", " + PRIVATE_FILE);
         } else {
             //Decryption
 
-            // Read encrypted message and public key from file
-            BufferedReader reader = new BufferedReader(new FileReader("rsa.txt"));
-            String[] encryptedValues = reader.readLine().trim().split(" ");
-            String[] keyParts = reader.readLine().trim().split(" ");
-            int n2 = Integer.parseInt(keyParts[0]);
-            int e2 = Integer.parseInt(keyParts[1]);
-            reader.close();
+            // Read encrypted message and public key from file, rsa.txt is the old decimal format
+            RSAContainer container = Files.exists(CONTAINER_FILE) ? RSAContainer.read(CONTAINER_FILE) : RSAContainer.readText(TEXT_FILE);
+            BigInteger n2 = container.getN();
+            BigInteger e2 = container.getE();
+            List<BigInteger> blocks = container.getBlocks();
+
+            if (container.getType() != RSAContainer.CHARS) {
+                // Block mode (option 3): the primes are in rsa_private.txt
+                BufferedReader keyReader = new BufferedReader(new FileReader(PRIVATE_FILE.toFile()));
+                String[] primeParts = keyReader.readLine().trim().split(" ");
+                keyReader.close();
+                RSAKeyPair keyPair = new RSAKeyPair(new BigInteger(primeParts[0]), new BigInteger(primeParts[1]), e2);
+                if (!keyPair.getN().equals(n2)) {
+                    System.out.println(PRIVATE_FILE + " does not belong to the encrypted key");
+                    return;
+                }
+
+                byte[] message;
+                if (container.getType() == RSAContainer.HYBRID) {
+                    message = new RSAHybrid(blocks.get(0), container.getPayload()).decrypt(keyPair);
+                } else {
+                    message = RSABlocks.decrypt(keyPair, blocks, pipeline);
+                }
+                System.out.println("\nDecrypted message: " + new String(message, StandardCharsets.UTF_8));
+                return;
+            }
 
-            // Factor n to retrieve p and q
-            int[] primes = factorizeN(n2);
-            int p2 = primes[0];
-            int q2 = primes[1];
+            // Factor n to retrieve p and q, on BigInteger so n is never truncated
+            BigInteger[] primes = new RSAFactorizer().factorSemiprime(n2);
 
-            // Recalculate phi and private key d
-            int phi2 = (p2 - 1) * (q2 - 1);
-            int d2 = modInverse(e2, phi2);
+            // Recalculate the private key, decryption uses CRT
+            RSAKeyPair keyPair = new RSAKeyPair(primes[0], primes[1], e2);
 
             // Decrypt each number to get the original characters
             StringBuilder decryptedMessage = new StringBuilder();
-            for (String part : encryptedValues) {
-                BigInteger cipher = new BigInteger(part);
-                BigInteger decryptedChar = cipher.modPow(BigInteger.valueOf(d2), BigInteger.valueOf(n2));
+            for (BigInteger decryptedChar : pipeline.decrypt(keyPair, blocks)) {
                 decryptedMessage.append((char) decryptedChar.intValue());
             }
 
@@ -0,0 +1,94 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//packs message bytes into RSA blocks instead of encrypting one character per block
+//every block is padded like PKCS#1 v1.5 (type 2): 00 02 <at least 8 random non-zero bytes> 00 <data>,
+//so a block holds up to k - 11 bytes of the message, k being the length of n in bytes
+public class RSABlocks {
+    //00 02, at least 8 padding bytes and the 00 separator
+    public static final int OVERHEAD = 11;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final RSAPipeline SEQUENTIAL = new RSAPipeline(1, 1);
+
+    //how many message bytes fit into one block of this key
+    public static int maxDataLength(RSAKeyPair key) {
+        return key.getModulusBytes() - OVERHEAD;
+    }
+
+    public static List<BigInteger> encrypt(RSAKeyPair key, byte[] message) {
+        return encrypt(key, message, SEQUENTIAL);
+    }
+
+    public static byte[] decrypt(RSAKeyPair key, List<BigInteger> blocks) {
+        return decrypt(key, blocks, SEQUENTIAL);
+    }
+
+    //padding is cheap and done here, only the RSA operations of the blocks run on the pipeline
+    public static List<BigInteger> encrypt(RSAKeyPair key, byte[] message, RSAPipeline pipeline) {
+        int k = key.getModulusBytes();
+        int max = maxDataLength(key);
+        if (max < 1) {
+            throw new IllegalArgumentException("Modulus too small for padded blocks: " + k + " bytes");
+        }
+        List<BigInteger> padded = new ArrayList<>(Math.max(1, (message.length + max - 1) / max));
+        int off = 0;
+        do {
+            int len = Math.min(max, message.length - off);
+            padded.add(pad(message, off, len, k));
+            off += len;
+        } while (off < message.length);
+        return pipeline.encrypt(key, padded);
+    }
+
+    public static byte[] decrypt(RSAKeyPair key, List<BigInteger> blocks, RSAPipeline pipeline) {
+        int k = key.getModulusBytes();
+        byte[] message = new byte[blocks.size() * (k - OVERHEAD)];
+        int length = 0;
+        for (BigInteger padded : pipeline.decrypt(key, blocks)) {
+            length += unpad(padded, k, message, length);
+        }
+        return length == message.length ? message : Arrays.copyOf(message, length);
+    }
+
+    //k bytes 00 02 PS 00 data as a number, always smaller than n because of the leading zero
+    static BigInteger pad(byte[] data, int off, int len, int k) {
+        if (len > k - OVERHEAD) {
+            throw new IllegalArgumentException("Block data too long: " + len + " > " + (k - OVERHEAD));
+        }
+        byte[] block = new byte[k];
+        block[1] = 2;
+        int separator = k - len - 1;
+        for (int i = 2; i < separator; i++) {
+            byte b;
+            do {
+                b = (byte) RANDOM.nextInt(256);
+            } while (b == 0);
+            block[i] = b;
+        }
+        System.arraycopy(data, off, block, separator + 1, len);
+        return new BigInteger(1, block);
+    }
+
+    //checks the padding and copies the data of the block to dst at off, returns how many bytes that is
+    static int unpad(BigInteger padded, int k, byte[] dst, int off) {
+        byte[] bytes = padded.toByteArray();
+        //toByteArray drops the leading 00, so 02 comes first and the block is k - 1 bytes long
+        if (bytes.length != k - 1 || bytes[0] != 2) {
+            throw new IllegalArgumentException("Invalid block padding");
+        }
+        int separator = 1;
+        while (separator < bytes.length && bytes[separator] != 0) {
+            separator++;
+        }
+        if (separator == bytes.length || separator < OVERHEAD - 2) {
+            throw new IllegalArgumentException("Invalid block padding");
+        }
+        int len = bytes.length - separator - 1;
+        System.arraycopy(bytes, separator + 1, dst, off, len);
+        return len;
+    }
+}
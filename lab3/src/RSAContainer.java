@@ -0,0 +1,246 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+//binary file with RSA ciphertext, written and read through a FileChannel with one 64 KiB buffer
+//layout: magic "RSAC", version, type, n and e as int length + bytes, int block count,
+//every block as k big-endian bytes (k = length of n), int payload length + payload
+public class RSAContainer {
+    public static final int MAGIC = 0x52534143;
+    public static final byte VERSION = 1;
+    //one block per character, menu option 2
+    public static final byte CHARS = 0;
+    //padded blocks from RSABlocks
+    public static final byte BLOCKS = 1;
+    //one wrapped AES key followed by the AES-GCM payload of RSAHybrid
+    public static final byte HYBRID = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    //longer n or e are not real keys, most likely a broken file
+    private static final int MAX_KEY_BYTES = 1 << 16;
+
+    private final byte type;
+    private final BigInteger n;
+    private final BigInteger e;
+    private final List<BigInteger> blocks;
+    private final byte[] payload;
+
+    public RSAContainer(byte type, BigInteger n, BigInteger e, List<BigInteger> blocks, byte[] payload) {
+        if (type < CHARS || type > HYBRID) {
+            throw new IllegalArgumentException("Unknown container type: " + type);
+        }
+        this.type = type;
+        this.n = n;
+        this.e = e;
+        this.blocks = blocks;
+        this.payload = payload != null ? payload : new byte[0];
+    }
+
+    public void write(Path path) throws IOException {
+        int k = getBlockSize();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).put(VERSION).put(type);
+            putNumber(channel, buffer, n);
+            putNumber(channel, buffer, e);
+            buffer.putInt(blocks.size());
+            byte[] block = new byte[k];
+            for (BigInteger value : blocks) {
+                toFixedWidth(value, block);
+                put(channel, buffer, block, 0, k);
+            }
+            ensure(channel, buffer, 4);
+            buffer.putInt(payload.length);
+            put(channel, buffer, payload, 0, payload.length);
+            flush(channel, buffer);
+        }
+    }
+
+    public static RSAContainer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.flip();
+            fill(channel, buffer, 6);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an RSA container: " + path);
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported container version: " + version);
+            }
+            byte type = buffer.get();
+            if (type < CHARS || type > HYBRID) {
+                throw new IOException("Unknown container type: " + type);
+            }
+            BigInteger n = getNumber(channel, buffer);
+            //a zero or negative modulus would make k 0, and then the block count below is not limited by the file size
+            if (n.signum() <= 0) {
+                throw new IOException("Invalid modulus: " + n);
+            }
+            BigInteger e = getNumber(channel, buffer);
+            int k = (n.bitLength() + 7) / 8;
+
+            fill(channel, buffer, 4);
+            int count = buffer.getInt();
+            //checked against the file size, so a broken count does not allocate a huge list
+            if (count < 0 || (long) count * k > channel.size()) {
+                throw new IOException("Invalid block count: " + count);
+            }
+            List<BigInteger> blocks = new ArrayList<>(count);
+            byte[] block = new byte[k];
+            for (int i = 0; i < count; i++) {
+                get(channel, buffer, block, 0, k);
+                blocks.add(new BigInteger(1, block));
+            }
+
+            fill(channel, buffer, 4);
+            int length = buffer.getInt();
+            if (length < 0 || length > channel.size()) {
+                throw new IOException("Invalid payload length: " + length);
+            }
+            byte[] payload = new byte[length];
+            get(channel, buffer, payload, 0, length);
+            return new RSAContainer(type, n, e, blocks, payload);
+        }
+    }
+
+    //the old text format: ciphertext numbers on the first line, "n e" on the second, optional Base64 payload on the third
+    public static RSAContainer readText(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String[] encryptedValues = reader.readLine().trim().split(" ");
+            String[] keyParts = reader.readLine().trim().split(" ");
+            String payload = reader.readLine();
+
+            BigInteger n = new BigInteger(keyParts[0]);
+            BigInteger e = new BigInteger(keyParts[1]);
+            List<BigInteger> blocks = new ArrayList<>();
+            for (String part : encryptedValues) {
+                blocks.add(new BigInteger(part));
+            }
+            if (payload != null && !payload.trim().isEmpty())
+                return new RSAContainer(HYBRID, n, e, blocks, Base64.getDecoder().decode(payload.trim()));
+            else if (n.bitLength() > 31)
+                return new RSAContainer(BLOCKS, n, e, blocks, null);
+            else
+                return new RSAContainer(CHARS, n, e, blocks, null);
+        }
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public BigInteger getN() {
+        return n;
+    }
+
+    public BigInteger getE() {
+        return e;
+    }
+
+    public List<BigInteger> getBlocks() {
+        return blocks;
+    }
+
+    //empty unless the type is HYBRID
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    //bytes per block, the length of n
+    public int getBlockSize() {
+        return (n.bitLength() + 7) / 8;
+    }
+
+    //value as exactly dst.length big-endian bytes, zeros in front
+    private static void toFixedWidth(BigInteger value, byte[] dst) {
+        byte[] bytes = value.toByteArray();
+        int start = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+        int length = bytes.length - start;
+        if (value.signum() < 0 || length > dst.length) {
+            throw new IllegalArgumentException("Block does not fit into " + dst.length + " bytes");
+        }
+        int pad = dst.length - length;
+        for (int i = 0; i < pad; i++) {
+            dst[i] = 0;
+        }
+        System.arraycopy(bytes, start, dst, pad, length);
+    }
+
+    private static void putNumber(FileChannel channel, ByteBuffer buffer, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        ensure(channel, buffer, 4);
+        buffer.putInt(bytes.length);
+        put(channel, buffer, bytes, 0, bytes.length);
+    }
+
+    private static BigInteger getNumber(FileChannel channel, ByteBuffer buffer) throws IOException {
+        fill(channel, buffer, 4);
+        int length = buffer.getInt();
+        if (length < 1 || length > MAX_KEY_BYTES) {
+            throw new IOException("Invalid key length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        get(channel, buffer, bytes, 0, length);
+        return new BigInteger(bytes);
+    }
+
+    //copies src into the buffer, writing the buffer out whenever it is full
+    private static void put(FileChannel channel, ByteBuffer buffer, byte[] src, int off, int len) throws IOException {
+        while (len > 0) {
+            ensure(channel, buffer, 1);
+            int chunk = Math.min(len, buffer.remaining());
+            buffer.put(src, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    //copies len bytes into dst, refilling the buffer from the channel when it runs empty
+    private static void get(FileChannel channel, ByteBuffer buffer, byte[] dst, int off, int len) throws IOException {
+        while (len > 0) {
+            fill(channel, buffer, 1);
+            int chunk = Math.min(len, buffer.remaining());
+            buffer.get(dst, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    //makes sure at least needed bytes are in the buffer (in read mode)
+    private static void fill(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+    }
+}
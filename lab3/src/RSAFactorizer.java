@@ -0,0 +1,304 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+//factors moduli to find weak RSA keys: trial division with a cached sieve, Miller-Rabin for primality
+//and Pollard's rho (Brent's variant) for the rest, with a budget so strong keys give up instead of running forever
+public class RSAFactorizer {
+    //default limit of rho iterations per composite, enough for factors up to about 2^40
+    public static final long DEFAULT_ITERATIONS = 1L << 22;
+    //factors below this are found by trial division
+    private static final int TRIAL_LIMIT = 1 << 16;
+    //Miller-Rabin with these bases is exact below 3.3 * 10^24, beyond that a composite passes with probability <= 4^-20
+    private static final int[] WITNESSES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71};
+    //rho steps between two gcds
+    private static final int BATCH = 128;
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+
+    //largest sieve so far, shared by all threads, only ever replaced by a bigger one
+    private static volatile int[] sieve = new int[0];
+    private static volatile int sieveLimit = 1;
+
+    private final long maxIterations;
+
+    public RSAFactorizer() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public RSAFactorizer(long maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public static class Result {
+        private final BigInteger n;
+        private final List<BigInteger> factors;
+        private final BigInteger cofactor;
+
+        Result(BigInteger n, List<BigInteger> factors, BigInteger cofactor) {
+            this.n = n;
+            this.factors = factors;
+            this.cofactor = cofactor;
+        }
+
+        public BigInteger getN() {
+            return n;
+        }
+
+        //prime factors found so far, sorted and with repeats
+        public List<BigInteger> getFactors() {
+            return factors;
+        }
+
+        //the composite part that was not factored within the budget, 1 if there is none
+        public BigInteger getCofactor() {
+            return cofactor;
+        }
+
+        public boolean isComplete() {
+            return cofactor.equals(BigInteger.ONE);
+        }
+    }
+
+    //all primes up to limit, the sieve is computed once and reused by later calls
+    public static int[] primes(int limit) {
+        if (sieveLimit < limit) {
+            synchronized (RSAFactorizer.class) {
+                if (sieveLimit < limit) {
+                    sieve = sieveOfEratosthenes(limit);
+                    sieveLimit = limit;
+                }
+            }
+        }
+        //read after the limit, so the sieve is at least as big as the limit that was seen
+        int[] primes = sieve;
+        int count = Arrays.binarySearch(primes, limit);
+        return Arrays.copyOf(primes, count >= 0 ? count + 1 : -count - 1);
+    }
+
+    public static boolean isProbablePrime(BigInteger n) {
+        if (n.bitLength() < 32) {
+            return isPrime(n.longValue());
+        }
+        if (!n.testBit(0)) {
+            return false;
+        }
+        BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+        int s = nMinusOne.getLowestSetBit();
+        BigInteger d = nMinusOne.shiftRight(s);
+        for (int witness : WITNESSES) {
+            BigInteger x = BigInteger.valueOf(witness).modPow(d, n);
+            if (x.equals(BigInteger.ONE) || x.equals(nMinusOne)) {
+                continue;
+            }
+            int r = 1;
+            for (; r < s; r++) {
+                x = x.multiply(x).mod(n);
+                if (x.equals(nMinusOne)) {
+                    break;
+                }
+            }
+            if (r == s) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Miller-Rabin for numbers below 2^31, so squares still fit into a long, exact with the bases 2, 7 and 61
+    static boolean isPrime(long n) {
+        if (n < 2) {
+            return false;
+        }
+        for (int p : new int[]{2, 3, 5, 7, 11, 13, 61}) {
+            if (n % p == 0) {
+                return n == p;
+            }
+        }
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>= s;
+        for (int witness : new int[]{2, 7, 61}) {
+            long x = modPow(witness, d, n);
+            if (x == 1 || x == n - 1) {
+                continue;
+            }
+            int r = 1;
+            for (; r < s; r++) {
+                x = x * x % n;
+                if (x == n - 1) {
+                    break;
+                }
+            }
+            if (r == s) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Result factor(BigInteger n) {
+        if (n.signum() <= 0) {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        List<BigInteger> factors = new ArrayList<>();
+        BigInteger rest = n;
+        for (int p : primes(TRIAL_LIMIT)) {
+            BigInteger prime = BigInteger.valueOf(p);
+            if (rest.bitLength() < 32 && (long) p * p > rest.longValue()) {
+                break;
+            }
+            if (rest.mod(prime).signum() != 0) {
+                continue;
+            }
+            do {
+                factors.add(prime);
+                rest = rest.divide(prime);
+            } while (rest.mod(prime).signum() == 0);
+        }
+
+        List<BigInteger> composites = new ArrayList<>();
+        split(rest, factors, composites);
+        Collections.sort(factors);
+        BigInteger cofactor = BigInteger.ONE;
+        for (BigInteger composite : composites) {
+            cofactor = cofactor.multiply(composite);
+        }
+        return new Result(n, factors, cofactor);
+    }
+
+    //the two primes of an RSA modulus, smaller one first
+    public BigInteger[] factorSemiprime(BigInteger n) {
+        Result result = factor(n);
+        if (!result.isComplete() || result.getFactors().size() != 2) {
+            throw new IllegalArgumentException("No prime factors found for n = " + n);
+        }
+        return result.getFactors().toArray(new BigInteger[0]);
+    }
+
+    //factors every modulus on the common fork-join pool, results are in the order of the moduli
+    public List<Result> factorAll(List<BigInteger> moduli) {
+        return moduli.parallelStream()
+                .map(this::factor)
+                .collect(Collectors.toList());
+    }
+
+    //splits n into primes, parts that could not be split within the budget go to composites
+    private void split(BigInteger n, List<BigInteger> factors, List<BigInteger> composites) {
+        if (n.equals(BigInteger.ONE)) {
+            return;
+        }
+        if (isProbablePrime(n)) {
+            factors.add(n);
+            return;
+        }
+        BigInteger root = n.sqrt();
+        if (root.multiply(root).equals(n)) {
+            split(root, factors, composites);
+            split(root, factors, composites);
+            return;
+        }
+        BigInteger d = brent(n);
+        if (d == null) {
+            composites.add(n);
+            return;
+        }
+        split(d, factors, composites);
+        split(n.divide(d), factors, composites);
+    }
+
+    //a non-trivial divisor of the composite n, or null if none was found within maxIterations
+    private BigInteger brent(BigInteger n) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long iterations = 0;
+        while (iterations < maxIterations) {
+            BigInteger c = randomBelow(n, random);
+            BigInteger y = randomBelow(n, random);
+            BigInteger x = y;
+            BigInteger ys = y;
+            BigInteger q = BigInteger.ONE;
+            BigInteger g = BigInteger.ONE;
+            long r = 1;
+            while (g.equals(BigInteger.ONE) && iterations < maxIterations) {
+                x = y;
+                for (long i = 0; i < r; i++) {
+                    y = step(y, c, n);
+                }
+                iterations += r;
+                for (long k = 0; k < r && g.equals(BigInteger.ONE); k += BATCH) {
+                    ys = y;
+                    long steps = Math.min(BATCH, r - k);
+                    for (long i = 0; i < steps; i++) {
+                        y = step(y, c, n);
+                        q = q.multiply(x.subtract(y).abs()).mod(n);
+                    }
+                    g = q.gcd(n);
+                    iterations += steps;
+                }
+                r <<= 1;
+            }
+            if (g.equals(n)) {
+                //the batch overshot, redo it one step at a time
+                do {
+                    ys = step(ys, c, n);
+                    g = x.subtract(ys).abs().gcd(n);
+                } while (g.equals(BigInteger.ONE));
+            }
+            if (!g.equals(n) && !g.equals(BigInteger.ONE)) {
+                return g;
+            }
+            //cycle without a factor, try another polynomial
+        }
+        return null;
+    }
+
+    private static BigInteger step(BigInteger y, BigInteger c, BigInteger n) {
+        return y.multiply(y).add(c).mod(n);
+    }
+
+    private static BigInteger randomBelow(BigInteger n, ThreadLocalRandom random) {
+        BigInteger value;
+        do {
+            value = new BigInteger(n.bitLength(), random);
+        } while (value.compareTo(n) >= 0 || value.compareTo(TWO) < 0);
+        return value;
+    }
+
+    private static long modPow(long base, long exponent, long n) {
+        long result = 1;
+        base %= n;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1) {
+                result = result * base % n;
+            }
+            base = base * base % n;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private static int[] sieveOfEratosthenes(int limit) {
+        boolean[] composite = new boolean[limit + 1];
+        int count = 0;
+        for (int i = 2; i <= limit; i++) {
+            if (composite[i]) {
+                continue;
+            }
+            count++;
+            for (long j = (long) i * i; j <= limit; j += i) {
+                composite[(int) j] = true;
+            }
+        }
+        int[] primes = new int[count];
+        int k = 0;
+        for (int i = 2; i <= limit; i++) {
+            if (!composite[i]) {
+                primes[k++] = i;
+            }
+        }
+        return primes;
+    }
+}
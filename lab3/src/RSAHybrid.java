@@ -0,0 +1,67 @@
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Collections;
+
+//hybrid encryption for messages longer than one block: the message is encrypted with a fresh AES-256-GCM key
+//and only that key goes through RSA, so there is one public-key operation per message whatever its length
+public class RSAHybrid {
+    private static final int AES_KEY_BITS = 256;
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    //the AES key as one padded RSA block
+    private final BigInteger wrappedKey;
+    //IV followed by the AES-GCM ciphertext and tag
+    private final byte[] payload;
+
+    public RSAHybrid(BigInteger wrappedKey, byte[] payload) {
+        this.wrappedKey = wrappedKey;
+        this.payload = payload;
+    }
+
+    public static RSAHybrid encrypt(RSAKeyPair key, byte[] message) throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(AES_KEY_BITS, RANDOM);
+        SecretKey secretKey = generator.generateKey();
+        byte[] rawKey = secretKey.getEncoded();
+        if (rawKey.length > RSABlocks.maxDataLength(key)) {
+            throw new IllegalArgumentException("Modulus too small to wrap an AES key: " + key.getModulusBytes() + " bytes");
+        }
+
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        byte[] payload = new byte[GCM_IV_LENGTH + message.length + GCM_TAG_BITS / 8];
+        System.arraycopy(iv, 0, payload, 0, GCM_IV_LENGTH);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+        cipher.doFinal(message, 0, message.length, payload, GCM_IV_LENGTH);
+
+        return new RSAHybrid(RSABlocks.encrypt(key, rawKey).get(0), payload);
+    }
+
+    public byte[] decrypt(RSAKeyPair key) throws GeneralSecurityException {
+        byte[] rawKey = RSABlocks.decrypt(key, Collections.singletonList(wrappedKey));
+        if (payload.length < GCM_IV_LENGTH) {
+            throw new IllegalArgumentException("Payload too short");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(rawKey, "AES"), new GCMParameterSpec(GCM_TAG_BITS, payload, 0, GCM_IV_LENGTH));
+        return cipher.doFinal(payload, GCM_IV_LENGTH, payload.length - GCM_IV_LENGTH);
+    }
+
+    public BigInteger getWrappedKey() {
+        return wrappedKey;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+}
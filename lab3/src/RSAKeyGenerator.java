@@ -0,0 +1,179 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+//generates RSA key pairs with a parallel prime search and keeps a pool of ready ones filled in the background,
+//so callers of nextKeyPair usually get a key without waiting for the search
+public class RSAKeyGenerator {
+    //odd candidates tested per random starting point
+    private static final int WINDOW = 1 << 12;
+    //candidates divisible by a prime below this are crossed out before any primality test
+    private static final int SIEVE_LIMIT = 1 << 14;
+    private static final int CERTAINTY = 100;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int bits;
+    private final int parallelism;
+    private final ExecutorService searchers;
+    private final BlockingQueue<RSAKeyPair> pool;
+    private final Thread filler;
+    private final AtomicLong generated = new AtomicLong();
+    private final long started = System.nanoTime();
+
+    //poolSize 0 means no background generation, every key is made on request
+    public RSAKeyGenerator(int bits, int parallelism, int poolSize) {
+        if (bits < 32) {
+            throw new IllegalArgumentException("Key size too small: " + bits);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.bits = bits;
+        this.parallelism = parallelism;
+        searchers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "rsa-prime-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (poolSize > 0) {
+            pool = new ArrayBlockingQueue<>(poolSize);
+            filler = new Thread(this::fill, "rsa-key-pool");
+            filler.setDaemon(true);
+            filler.start();
+        } else {
+            pool = null;
+            filler = null;
+        }
+    }
+
+    //a key from the pool, or a new one if the pool is empty
+    public RSAKeyPair nextKeyPair() throws InterruptedException {
+        RSAKeyPair keyPair = pool != null ? pool.poll() : null;
+        return keyPair != null ? keyPair : generate();
+    }
+
+    //waits for the background generation instead of starting a search of its own
+    public RSAKeyPair takeKeyPair() throws InterruptedException {
+        if (pool == null) {
+            return generate();
+        }
+        return pool.take();
+    }
+
+    //p and q one after the other, each with all search threads
+    public RSAKeyPair generate() throws InterruptedException {
+        while (true) {
+            BigInteger p = findPrime(bits - bits / 2);
+            BigInteger q = findPrime(bits / 2);
+            if (!p.equals(q)) {
+                RSAKeyPair keyPair = new RSAKeyPair(p, q, RSAKeyPair.DEFAULT_E);
+                generated.incrementAndGet();
+                return keyPair;
+            }
+        }
+    }
+
+    //every thread searches its own random window, the first prime found wins and the others are interrupted
+    public BigInteger findPrime(int primeBits) throws InterruptedException {
+        List<Callable<BigInteger>> searches = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            searches.add(() -> {
+                //findPrime keeps trying new windows itself, null only means this search lost and was interrupted
+                BigInteger prime = findPrime(primeBits, RSAKeyPair.DEFAULT_E, RANDOM);
+                if (prime == null) {
+                    throw new InterruptedException();
+                }
+                return prime;
+            });
+        }
+        try {
+            return searchers.invokeAny(searches);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    //a prime of exactly bits bits with the top two bits set, so two of them give a modulus of exactly twice the size
+    //p - 1 is coprime to e. Returns null if the thread was interrupted.
+    public static BigInteger findPrime(int bits, BigInteger e, SecureRandom random) {
+        if (bits < 16) {
+            throw new IllegalArgumentException("Prime size too small: " + bits);
+        }
+        int[] smallPrimes = RSAFactorizer.primes(Math.min(SIEVE_LIMIT, 1 << (bits - 2)));
+        while (!Thread.currentThread().isInterrupted()) {
+            BigInteger start = new BigInteger(bits, random).setBit(bits - 1).setBit(bits - 2).setBit(0);
+
+            //sieve the window: start + 2i is divisible by p when 2i = -start (mod p)
+            boolean[] composite = new boolean[WINDOW];
+            for (int k = 1; k < smallPrimes.length; k++) {
+                int p = smallPrimes[k];
+                int r = start.mod(BigInteger.valueOf(p)).intValue();
+                int i = (int) ((long) (p - r) % p * ((p + 1) / 2) % p);
+                for (; i < WINDOW; i += p) {
+                    composite[i] = true;
+                }
+            }
+
+            for (int i = 0; i < WINDOW; i++) {
+                if (composite[i]) {
+                    continue;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                BigInteger candidate = start.add(BigInteger.valueOf(2L * i));
+                if (candidate.bitLength() != bits) {
+                    break;
+                }
+                if (candidate.subtract(BigInteger.ONE).gcd(e).equals(BigInteger.ONE) && candidate.isProbablePrime(CERTAINTY)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void fill() {
+        try {
+            while (true) {
+                pool.put(generate());
+            }
+        } catch (InterruptedException e) {
+            //shutdown
+        }
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public int getPooled() {
+        return pool != null ? pool.size() : 0;
+    }
+
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    //keys generated since this generator was created, per second
+    public double getKeysPerSecond() {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return seconds > 0 ? generated.get() / seconds : 0;
+    }
+
+    public void shutdown() {
+        if (filler != null) {
+            filler.interrupt();
+        }
+        searchers.shutdownNow();
+    }
+}
@@ -0,0 +1,119 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+//RSA key pair on BigInteger, so real key sizes work and nothing overflows
+//decryption uses the Chinese Remainder Theorem: two exponentiations with half-size numbers instead of one full-size one
+public class RSAKeyPair {
+    public static final BigInteger DEFAULT_E = BigInteger.valueOf(65537);
+
+    private final BigInteger n;
+    private final BigInteger e;
+    private final BigInteger d;
+    private final BigInteger p;
+    private final BigInteger q;
+    //CRT parameters: d mod (p-1), d mod (q-1) and q^-1 mod p
+    private final BigInteger dP;
+    private final BigInteger dQ;
+    private final BigInteger qInv;
+
+    public RSAKeyPair(BigInteger p, BigInteger q, BigInteger e) {
+        if (p.equals(q)) {
+            throw new IllegalArgumentException("p and q must be different");
+        }
+        BigInteger phi = p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE));
+        if (!e.gcd(phi).equals(BigInteger.ONE)) {
+            throw new IllegalArgumentException("e is not coprime to phi");
+        }
+        this.p = p;
+        this.q = q;
+        this.e = e;
+        this.n = p.multiply(q);
+        this.d = e.modInverse(phi);
+        this.dP = d.mod(p.subtract(BigInteger.ONE));
+        this.dQ = d.mod(q.subtract(BigInteger.ONE));
+        this.qInv = q.modInverse(p);
+    }
+
+    //key from known primes, e is the smallest value from 3 up that is coprime to phi, like in RSA.main
+    public static RSAKeyPair fromPrimes(BigInteger p, BigInteger q) {
+        BigInteger phi = p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE));
+        BigInteger e = BigInteger.valueOf(3);
+        while (!e.gcd(phi).equals(BigInteger.ONE)) e = e.add(BigInteger.ONE);
+        return new RSAKeyPair(p, q, e);
+    }
+
+    //new key with an n of exactly bits bits (e.g. 2048, 3072 or 4096) and e = 65537
+    public static RSAKeyPair generate(int bits) {
+        return generate(bits, new SecureRandom());
+    }
+
+    public static RSAKeyPair generate(int bits, SecureRandom random) {
+        if (bits < 32) {
+            throw new IllegalArgumentException("Key size too small: " + bits);
+        }
+        //both primes have their top two bits set and p - 1, q - 1 coprime to e, so no pair is thrown away
+        while (true) {
+            BigInteger p = RSAKeyGenerator.findPrime(bits - bits / 2, DEFAULT_E, random);
+            BigInteger q = RSAKeyGenerator.findPrime(bits / 2, DEFAULT_E, random);
+            if (p == null || q == null) {
+                throw new IllegalStateException("Key generation interrupted");
+            }
+            if (!p.equals(q)) {
+                return new RSAKeyPair(p, q, DEFAULT_E);
+            }
+        }
+    }
+
+    public BigInteger encrypt(BigInteger m) {
+        return m.modPow(e, n);
+    }
+
+    public BigInteger decrypt(BigInteger c) {
+        BigInteger m1 = c.modPow(dP, p);
+        BigInteger m2 = c.modPow(dQ, q);
+        BigInteger h = qInv.multiply(m1.subtract(m2)).mod(p);
+        return m2.add(h.multiply(q));
+    }
+
+    //the plain c^d mod n, only for comparison with decrypt
+    public BigInteger decryptWithoutCrt(BigInteger c) {
+        return c.modPow(d, n);
+    }
+
+    public BigInteger getN() {
+        return n;
+    }
+
+    public BigInteger getE() {
+        return e;
+    }
+
+    public BigInteger getD() {
+        return d;
+    }
+
+    public BigInteger getP() {
+        return p;
+    }
+
+    public BigInteger getQ() {
+        return q;
+    }
+
+    public BigInteger getDP() {
+        return dP;
+    }
+
+    public BigInteger getDQ() {
+        return dQ;
+    }
+
+    public BigInteger getQInv() {
+        return qInv;
+    }
+
+    //bytes of n, the most a single block can hold is one less
+    public int getModulusBytes() {
+        return (n.bitLength() + 7) / 8;
+    }
+}
@@ -0,0 +1,103 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+//runs the RSA operation of many independent blocks on a fork-join pool
+//results are written by index, so the output has the same order as the input
+public class RSAPipeline {
+    //below this many blocks everything runs on the calling thread
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 8;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int sequentialThreshold;
+
+    //uses the common pool
+    public RSAPipeline() {
+        this(ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism(), DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+
+    //a pool of its own with this many threads, parallelism 1 always runs sequentially
+    public RSAPipeline(int parallelism, int sequentialThreshold) {
+        this(parallelism > 1 ? new ForkJoinPool(parallelism) : null, parallelism, sequentialThreshold);
+    }
+
+    private RSAPipeline(ForkJoinPool pool, int parallelism, int sequentialThreshold) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.sequentialThreshold = Math.max(1, sequentialThreshold);
+    }
+
+    public List<BigInteger> encrypt(RSAKeyPair key, List<BigInteger> blocks) {
+        return map(blocks, key::encrypt);
+    }
+
+    public List<BigInteger> decrypt(RSAKeyPair key, List<BigInteger> blocks) {
+        return map(blocks, key::decrypt);
+    }
+
+    //operation applied to every input, result i belongs to input i
+    public <T> List<BigInteger> map(List<T> inputs, Function<? super T, BigInteger> operation) {
+        BigInteger[] results = new BigInteger[inputs.size()];
+        if (pool == null || results.length < sequentialThreshold) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = operation.apply(inputs.get(i));
+            }
+        } else {
+            //a few chunks per thread, so uneven blocks still keep every thread busy
+            int grain = Math.max(1, results.length / (parallelism * 4));
+            pool.invoke(new BlockTask<>(inputs, results, operation, 0, results.length, grain));
+        }
+        return Arrays.asList(results);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    //stops the threads of a pool created by this pipeline, the common pool is left alone
+    public void shutdown() {
+        if (pool != null && pool != ForkJoinPool.commonPool()) {
+            pool.shutdown();
+        }
+    }
+
+    private static class BlockTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> inputs;
+        private final BigInteger[] results;
+        private final Function<? super T, BigInteger> operation;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        BlockTask(List<T> inputs, BigInteger[] results, Function<? super T, BigInteger> operation, int from, int to, int grain) {
+            this.inputs = inputs;
+            this.results = results;
+            this.operation = operation;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int i = from; i < to; i++) {
+                    results[i] = operation.apply(inputs.get(i));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BlockTask<>(inputs, results, operation, from, mid, grain),
+                    new BlockTask<>(inputs, results, operation, mid, to, grain));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.math.BigInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//plain test without a framework: java RSAKeyGeneratorTest, exits with 1 on the first failure
+public class RSAKeyGeneratorTest {
+    private static final int PARALLELISM = 4;
+    //more keys than search threads, so the searches that lost must have given their threads back
+    private static final int KEYS = 3 * PARALLELISM;
+
+    public static void main(String[] args) throws Exception {
+        generatesMoreKeysThanParallelism();
+        poolKeepsFilling();
+        System.out.println("RSAKeyGeneratorTest passed");
+    }
+
+    private static void generatesMoreKeysThanParallelism() throws Exception {
+        RSAKeyGenerator generator = new RSAKeyGenerator(512, PARALLELISM, 0);
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> keys = runner.submit(() -> {
+                for (int i = 0; i < KEYS; i++) {
+                    RSAKeyPair keyPair = generator.generate();
+                    check(keyPair.getN().bitLength() == 512, "key " + i + " has " + keyPair.getN().bitLength() + " bits");
+                    BigInteger m = BigInteger.valueOf(42);
+                    check(keyPair.decrypt(keyPair.encrypt(m)).equals(m), "key " + i + " does not decrypt");
+                }
+                return null;
+            });
+            keys.get(30, TimeUnit.SECONDS);
+            check(generator.getGenerated() == KEYS, "generated " + generator.getGenerated() + " keys instead of " + KEYS);
+            check(busySearchThreads() == 0, busySearchThreads() + " search threads still running after the last key");
+        } finally {
+            runner.shutdownNow();
+            generator.shutdown();
+        }
+    }
+
+    private static void poolKeepsFilling() throws Exception {
+        RSAKeyGenerator generator = new RSAKeyGenerator(512, PARALLELISM, 2);
+        try {
+            for (int i = 0; i < KEYS; i++) {
+                check(generator.takeKeyPair().getN().bitLength() == 512, "pooled key " + i + " has the wrong size");
+            }
+        } finally {
+            generator.shutdown();
+        }
+    }
+
+    //search threads that are not waiting for work
+    private static int busySearchThreads() throws InterruptedException {
+        //a lost search stops at its next candidate, give it a moment
+        Thread.sleep(200);
+        int busy = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("rsa-prime-search") && thread.getState() == Thread.State.RUNNABLE) {
+                busy++;
+            }
+        }
+        return busy;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+//a fixed number of persistent connections to one address, a sender borrows one for a whole frame
+//before a connection is reused it is checked for an end of stream, so a receiver that closed it in the meantime
+//is noticed and the frame goes over a new connection. The receiver does not acknowledge frames: if it closes
+//the connection while a frame is on the way, that frame is lost, so delivery is at-most-once.
+public class ConnectionPool implements Closeable {
+    private final String host;
+    private final int port;
+    private final Connection[] connections;
+    private final BlockingQueue<Connection> idle;
+
+    public ConnectionPool(String host, int port, int size) throws IOException {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1: " + size);
+        }
+        this.host = host;
+        this.port = port;
+        connections = new Connection[size];
+        idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            connections[i] = new Connection();
+            try {
+                connections[i].open();
+            } catch (IOException e) {
+                //the ones opened so far would leak otherwise
+                for (int j = 0; j < i; j++) {
+                    connections[j].closeQuietly();
+                }
+                throw e;
+            }
+            idle.add(connections[i]);
+        }
+    }
+
+    //writes the lines as one frame, waits while every connection is busy
+    public void send(String... lines) throws IOException, InterruptedException {
+        Connection connection = idle.take();
+        try {
+            try {
+                connection.send(lines);
+            } catch (IOException e) {
+                //the connection broke while writing, try once more on a new one
+                connection.closeQuietly();
+                connection.send(lines);
+            }
+        } finally {
+            idle.put(connection);
+        }
+    }
+
+    public int getSize() {
+        return connections.length;
+    }
+
+    @Override
+    public void close() {
+        for (Connection connection : connections) {
+            connection.closeQuietly();
+        }
+    }
+
+    private class Connection {
+        private SocketChannel channel;
+        //anything the receiver sends is thrown away, the reads only look for the end of the stream
+        private final ByteBuffer probe = ByteBuffer.allocate(64);
+
+        void open() throws IOException {
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+
+        void send(String[] lines) throws IOException {
+            if (channel == null || !isOpenOnBothSides()) {
+                closeQuietly();
+                open();
+            }
+            StringBuilder frame = new StringBuilder();
+            for (String line : lines) {
+                frame.append(line).append('\n');
+            }
+            ByteBuffer bytes = Charset.defaultCharset().encode(frame.toString());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        //a non-blocking read returns -1 once the receiver has closed its side, a write would still succeed then
+        private boolean isOpenOnBothSides() {
+            try {
+                channel.configureBlocking(false);
+                int read;
+                do {
+                    probe.clear();
+                    read = channel.read(probe);
+                } while (read > 0);
+                channel.configureBlocking(true);
+                return read == 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            if (channel != null) {
+                SocketChannel closing = channel;
+                channel = null;
+                try {
+                    closing.close();
+                } catch (IOException e) {
+                    //nothing more to do with it
+                }
+            }
+        }
+    }
+}
@@ -1,40 +1,53 @@
 import java.io.*;
-import java.net.*;
-import java.security.*;
-import java.util.Base64;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Main {
+    private static final String HOST = "localhost";
+    private static final int PORT = 1234;
+
+    //usage: Main [connections], every line from stdin is signed and sent as one message
     public static void main(String[] args) throws Exception {
-        // generating rsa key pairRSA
-        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-        keyGen.initialize(2048);
-        KeyPair keyPair = keyGen.generateKeyPair();
-        PrivateKey privateKey = keyPair.getPrivate();
-        PublicKey publicKey = keyPair.getPublic();
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
 
-        // Requesting message
-        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-        System.out.print("Enter the message: ");
-        String message = reader.readLine();
+        // rsa key pair, generated on the first run and loaded after that
+        SigningService signer = SigningService.loadOrGenerate(Paths.get("signing.key"), Paths.get("signing.pub"));
 
-        // Creating digital signature
-        Signature sign = Signature.getInstance("SHA256withRSA");
-        sign.initSign(privateKey);
-        sign.update(message.getBytes());
-        byte[] signatureBytes = sign.sign();
-        String signature = Base64.getEncoder().encodeToString(signatureBytes);
+        // Persistent connections, one sender thread per connection
+        ConnectionPool pool = new ConnectionPool(HOST, PORT, connections);
+        //the queue is bounded, when it is full the reading thread signs and sends itself and stops reading for a while
+        ThreadPoolExecutor senders = new ThreadPoolExecutor(connections, connections, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(connections * 64), new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicLong sent = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
 
-        // Public key base64
-        String publicKeyStr = Base64.getEncoder().encodeToString(publicKey.getEncoded());
+        // Requesting messages until the end of the input
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        System.out.println("Enter messages, one per line:");
+        long start = System.nanoTime();
+        String message;
+        while ((message = reader.readLine()) != null) {
+            String line = message;
+            senders.execute(() -> {
+                try {
+                    // Creating digital signature and sending
+                    pool.send(signer.frame(line));
+                    sent.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    System.err.println("Error " + e.getMessage());
+                }
+            });
+        }
 
-        System.out.println("Signed and ready for sending.");
+        senders.shutdown();
+        senders.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        pool.close();
 
-        // Sending
-        Socket socket = new Socket("localhost", 1234);
-        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-        out.println(message);
-        out.println(signature);
-        out.println(publicKeyStr);
-        socket.close();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Signed and sent: %d, failed: %d, %.1f messages/s%n", sent.get(), failed.get(), sent.get() / seconds);
     }
 }
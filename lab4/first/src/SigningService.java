@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+//signs messages with one RSA key that is generated or loaded once
+//every thread gets its own Signature, already initialized with the private key
+public class SigningService {
+    private static final String ALGORITHM = "SHA256withRSA";
+    private static final int KEY_BITS = 2048;
+
+    private final PrivateKey privateKey;
+    //Base64 of the X.509 encoding, the third line of every frame
+    private final String publicKey;
+    private final ThreadLocal<Signature> signature;
+
+    public SigningService(KeyPair keyPair) {
+        privateKey = keyPair.getPrivate();
+        publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+        signature = ThreadLocal.withInitial(() -> {
+            try {
+                Signature sign = Signature.getInstance(ALGORITHM);
+                sign.initSign(privateKey);
+                return sign;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    //reads the key from the two files (PKCS#8 and X.509), or generates one and saves it there
+    public static SigningService loadOrGenerate(Path privateFile, Path publicFile) throws IOException, GeneralSecurityException {
+        KeyFactory factory = KeyFactory.getInstance("RSA");
+        if (Files.exists(privateFile) && Files.exists(publicFile)) {
+            PrivateKey privateKey = factory.generatePrivate(new PKCS8EncodedKeySpec(Files.readAllBytes(privateFile)));
+            PublicKey publicKey = factory.generatePublic(new X509EncodedKeySpec(Files.readAllBytes(publicFile)));
+            return new SigningService(new KeyPair(publicKey, privateKey));
+        }
+
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+        keyGen.initialize(KEY_BITS);
+        KeyPair keyPair = keyGen.generateKeyPair();
+        writePrivate(privateFile, keyPair.getPrivate().getEncoded());
+        Files.write(publicFile, keyPair.getPublic().getEncoded());
+        return new SigningService(keyPair);
+    }
+
+    //the private key file is created readable by the owner only (0600) where the file system has POSIX permissions
+    private static void writePrivate(Path file, byte[] bytes) throws IOException {
+        Files.deleteIfExists(file);
+        if (file.toAbsolutePath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+        Files.write(file, bytes);
+    }
+
+    //Base64 signature of the message
+    public String sign(String message) throws SignatureException {
+        Signature sign = signature.get();
+        sign.update(message.getBytes());
+        return Base64.getEncoder().encodeToString(sign.sign());
+    }
+
+    //the three lines that are sent: message, signature, public key
+    public String[] frame(String message) throws SignatureException {
+        return new String[]{message, sign(message), publicKey};
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+}
@@ -1,36 +1,22 @@
-import java.io.*;
-import java.net.*;
+import java.net.InetSocketAddress;
 
 public class Main {
-    public static void main(String[] args) throws Exception {
-        ServerSocket serverSocket = new ServerSocket(1234);
-        System.out.println("Waiting for message...");
-
-        Socket socket = serverSocket.accept();
-        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        String message = in.readLine();
-        String signature = in.readLine();
-        String publicKeyStr = in.readLine();
-        socket.close();
+    private static final int PORT = 1234;
+    private static final InetSocketAddress DOWNSTREAM = new InetSocketAddress("localhost", 1235);
 
-        System.out.println("Message received: " + message);
-        System.out.println("Signature: " + signature);
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-        System.out.print("Do you want to modify the signature? (yes/no): ");
-        String response = reader.readLine();
-        if (response.equalsIgnoreCase("yes")) {
-            System.out.print("Enter the new signaature: ");
-            signature = reader.readLine();
+    //usage: Main [pass | corrupt | replace <signature>], pass is the default
+    public static void main(String[] args) throws Exception {
+        TamperRule rule = TamperRule.PASS_THROUGH;
+        if (args.length > 0 && args[0].equals("corrupt")) {
+            rule = TamperRule.corruptSignature();
+        } else if (args.length > 1 && args[0].equals("replace")) {
+            rule = TamperRule.replaceSignature(args[1]);
+        } else if (args.length > 0 && !args[0].equals("pass")) {
+            System.err.println("Usage: Main [pass | corrupt | replace <signature>]");
+            System.exit(2);
         }
 
-        // Sending the message
-        Socket socket2 = new Socket("localhost", 1235);
-        PrintWriter out = new PrintWriter(socket2.getOutputStream(), true);
-        out.println(message);
-        out.println(signature);
-        out.println(publicKeyStr);
-        socket2.close();
-        serverSocket.close();
+        System.out.println("Waiting for messages...");
+        new Relay(DOWNSTREAM, rule).run(PORT);
     }
 }
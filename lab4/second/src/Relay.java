@@ -0,0 +1,368 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+//forwards three-line frames from any number of clients to one downstream receiver, on a single selector thread
+//the downstream connection is opened once and reused for every frame. When more than HIGH_WATER bytes are waiting
+//for it, reading from the clients stops until the queue is below LOW_WATER again, so a slow receiver slows the
+//senders down instead of filling the memory.
+//If downstream is not there or goes away, the relay keeps its clients and queued frames, stops reading from the
+//clients and connects again with a growing delay. A frame that was partly written is sent again from the start,
+//frames the receiver had already taken from the socket before it closed are lost (at-most-once).
+public class Relay {
+    private static final int BUFFER_SIZE = 8192;
+    //longest line accepted from a client, a public key or signature in Base64 is far below this
+    private static final int MAX_LINE = 1 << 20;
+    private static final int HIGH_WATER = 1 << 20;
+    private static final int LOW_WATER = 1 << 18;
+    //delay before the next connection attempt, doubled after every failure
+    private static final long MIN_BACKOFF = 100;
+    private static final long MAX_BACKOFF = 5000;
+
+    private final InetSocketAddress downstreamAddress;
+    private final TamperRule rule;
+    private final Charset charset = Charset.defaultCharset();
+
+    private Selector selector;
+    private SocketChannel downstream;
+    private SelectionKey downstreamKey;
+    //encoded frames that are not written to downstream yet
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+    private long pendingBytes;
+    //more than HIGH_WATER bytes queued and not yet below LOW_WATER again
+    private boolean backlogged;
+    private boolean connected;
+    //clients are read only while downstream is connected and not backlogged
+    private boolean reading;
+    private long backoff = MIN_BACKOFF;
+    //System.nanoTime() of the next connection attempt, only used while downstream is null
+    private long reconnectAt;
+    private SelectionKey serverKey;
+    //accepting pauses for MIN_BACKOFF after a failed accept, System.nanoTime() when it resumes, 0 while accepting
+    private long acceptAt;
+
+    private long clients;
+    private long frames;
+
+    public Relay(InetSocketAddress downstreamAddress, TamperRule rule) {
+        this.downstreamAddress = downstreamAddress;
+        this.rule = rule;
+    }
+
+    //runs until the thread is interrupted
+    public void run(int port) throws IOException {
+        selector = Selector.open();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            serverKey = server.register(selector, SelectionKey.OP_ACCEPT);
+            connectDownstream();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                long now = System.nanoTime();
+                //milliseconds until the next timer, 0 if none is running
+                long wait = 0;
+                if (downstream == null) {
+                    wait = (reconnectAt - now) / 1_000_000;
+                    if (wait <= 0) {
+                        connectDownstream();
+                        continue;
+                    }
+                }
+                if (acceptAt != 0) {
+                    long resume = (acceptAt - now) / 1_000_000;
+                    if (resume <= 0) {
+                        acceptAt = 0;
+                        serverKey.interestOps(SelectionKey.OP_ACCEPT);
+                    } else {
+                        wait = wait == 0 ? resume : Math.min(wait, resume);
+                    }
+                }
+                if (wait > 0) {
+                    selector.select(wait);
+                } else {
+                    selector.select();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(server);
+                    } else if (key == downstreamKey) {
+                        try {
+                            if (key.isConnectable()) {
+                                finishConnect();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                readDownstream();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                writeDownstream();
+                            }
+                        } catch (IOException e) {
+                            downstreamFailed(e);
+                        }
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        } finally {
+            if (downstream != null) {
+                downstream.close();
+            }
+            selector.close();
+        }
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    private void connectDownstream() {
+        try {
+            downstream = SocketChannel.open();
+            downstream.configureBlocking(false);
+            downstream.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            if (downstream.connect(downstreamAddress)) {
+                downstreamKey = downstream.register(selector, 0);
+                connected();
+            } else {
+                downstreamKey = downstream.register(selector, SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            downstreamFailed(e);
+        }
+    }
+
+    private void finishConnect() throws IOException {
+        if (downstream.finishConnect()) {
+            connected();
+        }
+    }
+
+    private void connected() {
+        connected = true;
+        backoff = MIN_BACKOFF;
+        updateInterest();
+        updateReading();
+        System.out.println("Connected to " + downstreamAddress);
+    }
+
+    //closes the broken connection and plans the next attempt, the queue stays as it is
+    private void downstreamFailed(IOException e) {
+        System.out.println("Downstream " + downstreamAddress + " failed (" + e.getMessage() + "), retrying in " + backoff + " ms");
+        if (downstreamKey != null) {
+            downstreamKey.cancel();
+        }
+        try {
+            if (downstream != null) {
+                downstream.close();
+            }
+        } catch (IOException ignored) {
+            //the connection is dropped anyway
+        }
+        downstream = null;
+        downstreamKey = null;
+        connected = false;
+        ByteBuffer head = pending.peek();
+        if (head != null && head.position() > 0) {
+            pendingBytes += head.position();
+            head.rewind();
+        }
+        reconnectAt = System.nanoTime() + backoff * 1_000_000;
+        backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        updateReading();
+    }
+
+    //the receiver sends nothing back, reading only notices when it closes the connection
+    private void readDownstream() throws IOException {
+        ByteBuffer discard = ByteBuffer.allocate(256);
+        while (true) {
+            int read = downstream.read(discard);
+            if (read == -1) {
+                throw new IOException("Connection closed by the receiver");
+            }
+            if (read == 0) {
+                return;
+            }
+            discard.clear();
+        }
+    }
+
+    private void updateInterest() {
+        if (connected) {
+            downstreamKey.interestOps(SelectionKey.OP_READ | (pending.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+        }
+    }
+
+    //a client that can not be taken on is dropped, the ones already connected keep working
+    private void accept(ServerSocketChannel server) {
+        SocketChannel client;
+        try {
+            client = server.accept();
+        } catch (IOException e) {
+            //e.g. out of file descriptors, the connection stays in the backlog until accepting resumes
+            System.out.println("Accept failed (" + e.getMessage() + "), pausing for " + MIN_BACKOFF + " ms");
+            serverKey.interestOps(0);
+            acceptAt = System.nanoTime() + MIN_BACKOFF * 1_000_000;
+            return;
+        }
+        if (client == null) {
+            return;
+        }
+        try {
+            SocketAddress address = client.getRemoteAddress();
+            client.configureBlocking(false);
+            client.register(selector, reading ? SelectionKey.OP_READ : 0, new Client());
+            clients++;
+            System.out.println("Client connected: " + address + " (" + clients + " so far)");
+        } catch (IOException e) {
+            //e.g. reset right after connecting
+            System.out.println("Client dropped while connecting: " + e.getMessage());
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                //nothing more to release
+            }
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Client client = (Client) key.attachment();
+        int read;
+        try {
+            read = channel.read(client.buffer);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read == -1) {
+            //an unfinished frame of a closed client is dropped
+            System.out.println("Client disconnected after " + client.frames + " frames");
+            key.cancel();
+            channel.close();
+            return;
+        }
+        client.buffer.flip();
+        String line;
+        while ((line = client.nextLine()) != null) {
+            client.lines[client.count++] = line;
+            if (client.count == 3) {
+                client.count = 0;
+                client.frames++;
+                String[] frame;
+                try {
+                    frame = rule.apply(client.lines.clone());
+                } catch (RuntimeException e) {
+                    //a bad frame from one client must not stop the relay for all the others
+                    System.out.println("Frame dropped, tamper rule failed: " + e);
+                    continue;
+                }
+                if (frame == null || frame.length != 3) {
+                    System.out.println("Frame dropped, tamper rule did not return three lines");
+                    continue;
+                }
+                forward(frame);
+            }
+        }
+        client.buffer.compact();
+        if (!client.buffer.hasRemaining()) {
+            if (client.buffer.capacity() >= MAX_LINE) {
+                System.out.println("Line too long, client closed");
+                key.cancel();
+                channel.close();
+                return;
+            }
+            client.grow();
+        }
+    }
+
+    private void forward(String[] frame) {
+        String text = frame[0] + "\n" + frame[1] + "\n" + frame[2] + "\n";
+        ByteBuffer bytes = charset.encode(text);
+        pending.add(bytes);
+        pendingBytes += bytes.remaining();
+        frames++;
+        updateInterest();
+        if (!backlogged && pendingBytes > HIGH_WATER) {
+            backlogged = true;
+            updateReading();
+        }
+    }
+
+    private void writeDownstream() throws IOException {
+        while (!pending.isEmpty()) {
+            ByteBuffer head = pending.peek();
+            int written = downstream.write(head);
+            pendingBytes -= written;
+            if (head.hasRemaining()) {
+                //the socket buffer is full, OP_WRITE stays on
+                break;
+            }
+            pending.poll();
+        }
+        updateInterest();
+        if (backlogged && pendingBytes < LOW_WATER) {
+            backlogged = false;
+            updateReading();
+        }
+    }
+
+    //stops or resumes reading from every client
+    private void updateReading() {
+        boolean reading = connected && !backlogged;
+        if (reading == this.reading) {
+            return;
+        }
+        this.reading = reading;
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof Client) {
+                key.interestOps(reading ? SelectionKey.OP_READ : 0);
+            }
+        }
+    }
+
+    //line parser state of one client
+    private class Client {
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final String[] lines = new String[3];
+        private int count;
+        private long frames;
+
+        //the next complete line in the buffer (in read mode) without its line break, null if there is none yet
+        String nextLine() {
+            int start = buffer.position();
+            for (int i = start; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    int end = i > start && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                    ByteBuffer line = buffer.duplicate();
+                    line.position(start).limit(end);
+                    buffer.position(i + 1);
+                    return charset.decode(line).toString();
+                }
+            }
+            return null;
+        }
+
+        void grow() {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, MAX_LINE));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.Base64;
+
+//what the relay does with a frame (message, signature, public key) before forwarding it
+//runs on the selector thread, so it must not block: no stdin, no network, no files
+public interface TamperRule {
+
+    String[] apply(String[] frame);
+
+    //forwards every frame unchanged
+    TamperRule PASS_THROUGH = frame -> frame;
+
+    //every frame gets this signature instead of its own
+    static TamperRule replaceSignature(String signature) {
+        return frame -> new String[]{frame[0], signature, frame[2]};
+    }
+
+    //flips one bit of every signature, so the receiver has to reject it
+    //a signature that is empty or not Base64 is rejected anyway and is forwarded as it is
+    static TamperRule corruptSignature() {
+        return frame -> {
+            byte[] signature;
+            try {
+                signature = Base64.getDecoder().decode(frame[1]);
+            } catch (IllegalArgumentException e) {
+                return frame;
+            }
+            if (signature.length == 0) {
+                return frame;
+            }
+            signature[signature.length / 2] ^= 1;
+            return new String[]{frame[0], Base64.getEncoder().encodeToString(signature), frame[2]};
+        };
+    }
+}